@@ -0,0 +1,219 @@
+package com.bluecatcode.common.hash;
+
+import com.google.common.annotations.Beta;
+import com.google.common.math.LongMath;
+
+import java.math.RoundingMode;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.bluecatcode.common.hash.Hash.hash64;
+import static com.bluecatcode.common.hash.Hash.mix64;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * A thread-safe, mergeable Bloom filter.
+ * <p>
+ * Answers whether an element <i>might</i> have been put (with a configurable false positive probability)
+ * or <i>definitely</i> was not, using a fraction of the memory of a {@link java.util.HashSet}.
+ * </p>
+ * <p>
+ * The bits are kept in an {@link AtomicLongArray} and set with lock-free compare-and-set,
+ * the bit positions are derived from a 64-bit hash using double hashing.
+ * </p>
+ *
+ * @see com.google.common.hash.BloomFilter
+ * @see Hash#hash64(CharSequence)
+ */
+@Beta
+public class BloomFilter {
+
+    private static final byte FORMAT = 1;
+    // the largest array size some JVMs can allocate
+    private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final int hashFunctions;
+    private final AtomicLongArray words;
+
+    BloomFilter(int hashFunctions, AtomicLongArray words) {
+        this.hashFunctions = hashFunctions;
+        this.words = words;
+    }
+
+    /**
+     * Creates a filter sized for the expected number of insertions and false positive probability
+     *
+     * @param expectedInsertions the number of expected insertions
+     * @param fpp                the desired false positive probability, between 0 and 1 exclusive
+     * @return the filter
+     */
+    public static BloomFilter create(long expectedInsertions, double fpp) {
+        checkArgument(expectedInsertions > 0, format("Invalid expected insertions: %s > 0", expectedInsertions));
+        checkArgument(fpp > 0 && fpp < 1, format("Invalid false positive probability: 0 < %s < 1", fpp));
+
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        long words = LongMath.divide(bits, Long.SIZE, RoundingMode.CEILING);
+        checkArgument(words <= Integer.MAX_VALUE, "Filter too large: %s bits", bits);
+        int hashFunctions = Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+        return new BloomFilter(hashFunctions, new AtomicLongArray((int) words));
+    }
+
+    /**
+     * @param element the element to put
+     * @return true if the filter changed, i.e. the element definitely wasn't put before
+     */
+    public boolean put(CharSequence element) {
+        return put(hash64(element));
+    }
+
+    /**
+     * @param hash the 64-bit hash of the element to put
+     * @return true if the filter changed, i.e. the element definitely wasn't put before
+     */
+    public boolean put(long hash) {
+        long bitSize = bitSize();
+        long secondHash = mix64(hash);
+        boolean changed = false;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = ((hash + i * secondHash) & Long.MAX_VALUE) % bitSize;
+            changed |= setBit(bit);
+        }
+        return changed;
+    }
+
+    /**
+     * @param element the element to check
+     * @return true if the element might have been put, false if it definitely wasn't
+     */
+    public boolean mightContain(CharSequence element) {
+        return mightContain(hash64(element));
+    }
+
+    /**
+     * @param hash the 64-bit hash of the element to check
+     * @return true if the element might have been put, false if it definitely wasn't
+     */
+    public boolean mightContain(long hash) {
+        long bitSize = bitSize();
+        long secondHash = mix64(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = ((hash + i * secondHash) & Long.MAX_VALUE) % bitSize;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all elements of the other filter to this filter
+     *
+     * @param other the filter created with the same parameters
+     */
+    public void merge(BloomFilter other) {
+        checkArgument(other != null, "Expected non-null other");
+        checkArgument(other.hashFunctions == hashFunctions && other.words.length() == words.length(),
+                "Incompatible filters: %s and %s", this, other);
+        for (int i = 0; i < words.length(); i++) {
+            long bits = other.words.get(i);
+            for (long current; ((current = words.get(i)) | bits) != current; ) {
+                if (words.compareAndSet(i, current, current | bits)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the probability that {@link #mightContain(CharSequence)} erroneously returns true,
+     * based on the number of bits set so far
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitCount() / bitSize(), hashFunctions);
+    }
+
+    /**
+     * @return the number of bits set
+     */
+    public long bitCount() {
+        long count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of bits
+     */
+    public long bitSize() {
+        return (long) words.length() * Long.SIZE;
+    }
+
+    /**
+     * @return the number of hash functions (bits per element)
+     */
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * Serializes the filter, the result can be read with {@link #fromByteArray(byte[])}
+     *
+     * @return the serialized filter
+     * @throws IllegalStateException if the filter is too large to serialize into a byte array
+     */
+    public byte[] toByteArray() {
+        long size = 1 + 4 + 4 + (long) words.length() * 8;
+        checkState(size <= MAX_ARRAY_SIZE, format("Too large to serialize: %s > %s bytes", size, MAX_ARRAY_SIZE));
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.put(FORMAT).putInt(hashFunctions).putInt(words.length());
+        for (int i = 0; i < words.length(); i++) {
+            buffer.putLong(words.get(i));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param bytes the filter serialized with {@link #toByteArray()}
+     * @return the deserialized filter
+     * @throws IllegalArgumentException if the bytes aren't a serialized filter
+     */
+    public static BloomFilter fromByteArray(byte[] bytes) {
+        checkArgument(bytes != null, "Expected non-null bytes");
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            checkArgument(buffer.get() == FORMAT, "Unsupported format");
+            int hashFunctions = buffer.getInt();
+            int length = buffer.getInt();
+            checkArgument(hashFunctions > 0 && length > 0 && buffer.remaining() == length * 8L,
+                    "Invalid bloom filter: %s hash functions, %s words, %s bytes", hashFunctions, length, bytes.length);
+            AtomicLongArray words = new AtomicLongArray(length);
+            for (int i = 0; i < length; i++) {
+                words.set(i, buffer.getLong());
+            }
+            return new BloomFilter(hashFunctions, words);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated bloom filter", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("BloomFilter.of(%s bits, %s hash functions)", bitSize(), hashFunctions);
+    }
+
+    private boolean setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        for (long current; ((current = words.get(index)) & mask) == 0; ) {
+            if (words.compareAndSet(index, current, current | mask)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,181 @@
+package com.bluecatcode.common.hash;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Longs;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static com.bluecatcode.common.hash.Hash.hash64;
+import static com.bluecatcode.common.hash.Hash.mix64;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * A consistent hash ring with virtual nodes.
+ * <p>
+ * Each node is placed on the ring at a number of pseudo-random points (virtual nodes),
+ * a key belongs to the node owning the first point clockwise from the key hash.
+ * When a node joins or leaves only about {@code 1/n} of the keys move, unlike with {@code hash % n}.
+ * </p>
+ * <p>
+ * Nodes are identified by their {@link Object#toString()}, which must be stable and unique.
+ * Lookups are lock-free and allocation-free, membership changes copy the ring.
+ * </p>
+ *
+ * @param <N> the node type
+ * @see RendezvousHash
+ * @see Hash#hash64(CharSequence)
+ */
+@Beta
+public class ConsistentHashRing<N> {
+
+    private static final long REPLICA_SALT = 0x9e3779b97f4a7c15L;
+
+    private final int virtualNodes;
+    private volatile Ring<N> ring;
+
+    /**
+     * @param virtualNodes the number of points per node on the ring
+     */
+    public ConsistentHashRing(int virtualNodes) {
+        checkArgument(virtualNodes > 0, format("Invalid virtual nodes: %s > 0", virtualNodes));
+        this.virtualNodes = virtualNodes;
+        this.ring = new Ring<>(ImmutableSet.<N>of(), new long[0], new Object[0]);
+    }
+
+    /**
+     * Adds the node to the ring
+     *
+     * @param node the node to add
+     * @return true if the node was added, false if it was already present
+     */
+    public synchronized boolean add(N node) {
+        checkArgument(node != null, "Expected non-null node");
+        if (ring.nodes.contains(node)) {
+            return false;
+        }
+        this.ring = build(ImmutableSet.<N>builder().addAll(ring.nodes).add(node).build());
+        return true;
+    }
+
+    /**
+     * Removes the node from the ring
+     *
+     * @param node the node to remove
+     * @return true if the node was removed, false if it wasn't present
+     */
+    public synchronized boolean remove(N node) {
+        checkArgument(node != null, "Expected non-null node");
+        if (!ring.nodes.contains(node)) {
+            return false;
+        }
+        ImmutableSet.Builder<N> nodes = ImmutableSet.builder();
+        for (N member : ring.nodes) {
+            if (!member.equals(node)) {
+                nodes.add(member);
+            }
+        }
+        this.ring = build(nodes.build());
+        return true;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the node owning the key
+     * @throws IllegalStateException if the ring is empty
+     */
+    public N get(CharSequence key) {
+        return get(hash64(key));
+    }
+
+    /**
+     * @param keyHash the 64-bit hash of the key to look up
+     * @return the node owning the key
+     * @throws IllegalStateException if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    public N get(long keyHash) {
+        Ring<N> current = this.ring;
+        long[] points = current.points;
+        checkState(points.length > 0, "Expected non-empty ring");
+
+        int index = Arrays.binarySearch(points, keyHash);
+        if (index < 0) {
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return (N) current.owners[index];
+    }
+
+    /**
+     * @return the current nodes
+     */
+    public ImmutableSet<N> nodes() {
+        return ring.nodes;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int size() {
+        return ring.nodes.size();
+    }
+
+    @Override
+    public String toString() {
+        return format("ConsistentHashRing.of(%s, %s)", virtualNodes, ring.nodes);
+    }
+
+    private Ring<N> build(ImmutableSet<N> nodes) {
+        int size = nodes.size() * virtualNodes;
+        final long[] sortedPoints = new long[size];
+        final Object[] unsortedOwners = new Object[size];
+        Integer[] order = new Integer[size];
+
+        int i = 0;
+        for (N node : nodes) {
+            long nodeHash = hash64(node.toString());
+            for (int replica = 0; replica < virtualNodes; replica++, i++) {
+                sortedPoints[i] = mix64(nodeHash + replica * REPLICA_SALT);
+                unsortedOwners[i] = node;
+                order[i] = i;
+            }
+        }
+
+        final long[] unsortedPoints = sortedPoints.clone();
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer left, Integer right) {
+                int result = Longs.compare(unsortedPoints[left], unsortedPoints[right]);
+                // ties are resolved by node name, so that the ring doesn't depend on insertion order
+                return result != 0 ? result
+                        : unsortedOwners[left].toString().compareTo(unsortedOwners[right].toString());
+            }
+        });
+
+        Object[] owners = new Object[size];
+        for (int j = 0; j < size; j++) {
+            sortedPoints[j] = unsortedPoints[order[j]];
+            owners[j] = unsortedOwners[order[j]];
+        }
+        return new Ring<>(nodes, sortedPoints, owners);
+    }
+
+    private static final class Ring<N> {
+
+        private final ImmutableSet<N> nodes;
+        private final long[] points;
+        private final Object[] owners;
+
+        Ring(ImmutableSet<N> nodes, long[] points, Object[] owners) {
+            this.nodes = nodes;
+            this.points = points;
+            this.owners = owners;
+        }
+    }
+}
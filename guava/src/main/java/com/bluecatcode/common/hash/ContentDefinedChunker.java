@@ -0,0 +1,278 @@
+package com.bluecatcode.common.hash;
+
+import com.bluecatcode.common.functions.Consumer;
+import com.google.common.annotations.Beta;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import static com.bluecatcode.common.hash.Hash.mix64;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Splits content into chunks at content-defined boundaries, so that an insertion or deletion
+ * only changes the chunks around it, which makes the chunk digests suitable for deduplication
+ * and incremental synchronisation.
+ * <p>
+ * Boundaries are found with a Gear rolling hash over a 64 byte window, using the normalized chunking
+ * of FastCDC: a stricter mask before the average size and a looser one after it, which narrows
+ * the chunk size distribution. The Gear table is fixed, so the boundaries are stable across JVMs.
+ * </p>
+ *
+ * @see <a href="https://www.usenix.org/conference/atc16/technical-sessions/presentation/xia">FastCDC</a>
+ */
+@Beta
+public class ContentDefinedChunker {
+
+    private static final long[] GEAR = new long[256];
+    private static final int MAPPED_WINDOW = 1 << 28;
+
+    static {
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = mix64(0x2545f4914f6cdd1dL + i);
+        }
+    }
+
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final HashFunction digestFunction;
+    private final long strictMask;
+    private final long looseMask;
+
+    /**
+     * @param minSize        the minimum chunk size, boundaries are never looked for before it
+     * @param averageSize    the desired average chunk size, must be a power of two
+     * @param maxSize        the maximum chunk size
+     * @param digestFunction the function used to create chunk digests
+     */
+    public ContentDefinedChunker(int minSize, int averageSize, int maxSize, HashFunction digestFunction) {
+        checkArgument(minSize > 0, format("Invalid min size: %s > 0", minSize));
+        checkArgument(averageSize >= 64 && Integer.bitCount(averageSize) == 1,
+                format("Invalid average size: %s must be a power of two >= 64", averageSize));
+        checkArgument(minSize < averageSize && averageSize < maxSize && maxSize <= MAPPED_WINDOW / 4,
+                format("Invalid sizes: %s < %s < %s <= %s", minSize, averageSize, maxSize, MAPPED_WINDOW / 4));
+        checkArgument(digestFunction != null, "Expected non-null digest function");
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        this.digestFunction = digestFunction;
+
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        this.strictMask = -1L << (Long.SIZE - bits - 1);
+        this.looseMask = -1L << (Long.SIZE - bits + 1);
+    }
+
+    /**
+     * Creates a chunker with SHA-256 digests, the minimum size of a quarter
+     * and the maximum size of eight times the average size
+     *
+     * @param averageSize the desired average chunk size, must be a power of two
+     * @return the chunker
+     */
+    public static ContentDefinedChunker create(int averageSize) {
+        return new ContentDefinedChunker(averageSize / 4, averageSize, averageSize * 8, Hashing.sha256());
+    }
+
+    /**
+     * Returns the length of the chunk starting at the buffer position, without changing the buffer.
+     * <p>
+     * The remaining bytes are treated as the end of content, if there are fewer than the maximum size.
+     * </p>
+     *
+     * @param buffer the content
+     * @return the chunk length, zero if there are no remaining bytes
+     */
+    public int nextChunkLength(ByteBuffer buffer) {
+        checkArgument(buffer != null, "Expected non-null buffer");
+        int start = buffer.position();
+        int length = Math.min(buffer.remaining(), maxSize);
+        if (length <= minSize) {
+            return length;
+        }
+
+        long fingerprint = 0;
+        int i = minSize;
+        int normal = Math.min(averageSize, length);
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int base = buffer.arrayOffset() + start;
+            for (; i < normal; i++) {
+                fingerprint = (fingerprint << 1) + GEAR[array[base + i] & 0xff];
+                if ((fingerprint & strictMask) == 0) {
+                    return i + 1;
+                }
+            }
+            for (; i < length; i++) {
+                fingerprint = (fingerprint << 1) + GEAR[array[base + i] & 0xff];
+                if ((fingerprint & looseMask) == 0) {
+                    return i + 1;
+                }
+            }
+        } else {
+            for (; i < normal; i++) {
+                fingerprint = (fingerprint << 1) + GEAR[buffer.get(start + i) & 0xff];
+                if ((fingerprint & strictMask) == 0) {
+                    return i + 1;
+                }
+            }
+            for (; i < length; i++) {
+                fingerprint = (fingerprint << 1) + GEAR[buffer.get(start + i) & 0xff];
+                if ((fingerprint & looseMask) == 0) {
+                    return i + 1;
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Reads the channel to the end, passing every chunk to the consumer in order
+     *
+     * @param channel  the blocking channel to read
+     * @param consumer the chunk consumer
+     * @return the number of chunks
+     * @throws IOException if the channel can't be read
+     */
+    public long chunk(@WillNotClose ReadableByteChannel channel, Consumer<Chunk> consumer) throws IOException {
+        checkArgument(channel != null, "Expected non-null channel");
+        checkArgument(consumer != null, "Expected non-null consumer");
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(maxSize * 2, 1 << 20));
+        long offset = 0;
+        long chunks = 0;
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    endOfStream = true;
+                    break;
+                }
+            }
+            buffer.flip();
+            while (buffer.remaining() >= maxSize || (endOfStream && buffer.hasRemaining())) {
+                int length = nextChunkLength(buffer);
+                consumer.accept(new Chunk(offset, length, digest(buffer, length, null)));
+                buffer.position(buffer.position() + length);
+                offset += length;
+                chunks++;
+            }
+            buffer.compact();
+        }
+        return chunks;
+    }
+
+    /**
+     * Memory-maps the file in windows, passing every chunk to the consumer in order
+     *
+     * @param file     the file to read
+     * @param consumer the chunk consumer
+     * @return the number of chunks
+     * @throws IOException if the file can't be read
+     */
+    public long chunk(File file, Consumer<Chunk> consumer) throws IOException {
+        checkArgument(file != null, "Expected non-null file");
+        checkArgument(consumer != null, "Expected non-null consumer");
+
+        byte[] scratch = new byte[maxSize];
+        long chunks = 0;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            long offset = 0;
+            while (offset < size) {
+                long windowSize = Math.min(size - offset, MAPPED_WINDOW);
+                boolean lastWindow = offset + windowSize == size;
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, windowSize);
+                while (window.remaining() >= maxSize || (lastWindow && window.hasRemaining())) {
+                    int length = nextChunkLength(window);
+                    consumer.accept(new Chunk(offset, length, digest(window, length, scratch)));
+                    window.position(window.position() + length);
+                    offset += length;
+                    chunks++;
+                }
+            }
+        }
+        return chunks;
+    }
+
+    @Override
+    public String toString() {
+        return format("ContentDefinedChunker.of(%s, %s, %s, %s)", minSize, averageSize, maxSize, digestFunction);
+    }
+
+    private HashCode digest(ByteBuffer buffer, int length, @Nullable byte[] scratch) {
+        if (buffer.hasArray()) {
+            return digestFunction.hashBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        }
+        ByteBuffer slice = buffer.duplicate();
+        //noinspection ConstantConditions
+        slice.get(scratch, 0, length);
+        return digestFunction.hashBytes(scratch, 0, length);
+    }
+
+    /**
+     * A content-defined chunk
+     */
+    public static final class Chunk {
+
+        private final long offset;
+        private final int length;
+        private final HashCode digest;
+
+        Chunk(long offset, int length, HashCode digest) {
+            this.offset = offset;
+            this.length = length;
+            this.digest = digest;
+        }
+
+        /**
+         * @return the offset of the chunk in the content
+         */
+        public long offset() {
+            return offset;
+        }
+
+        /**
+         * @return the chunk length
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * @return the chunk digest
+         */
+        public HashCode digest() {
+            return digest;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object other) {
+            if (this == other) return true;
+            if (other == null || getClass() != other.getClass()) return false;
+            Chunk that = (Chunk) other;
+            return offset == that.offset && length == that.length && digest.equals(that.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (int) (offset ^ (offset >>> 32)) + length) + digest.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return format("Chunk.of(%s, %s, %s)", offset, length, digest);
+        }
+    }
+}
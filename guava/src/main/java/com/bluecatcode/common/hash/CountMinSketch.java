@@ -0,0 +1,208 @@
+package com.bluecatcode.common.hash;
+
+import com.google.common.annotations.Beta;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.bluecatcode.common.hash.Hash.hash64;
+import static com.bluecatcode.common.hash.Hash.mix64;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * A thread-safe, mergeable Count-Min sketch.
+ * <p>
+ * Estimates the frequency of elements in a stream, never underestimating.
+ * With probability {@code 1 - delta} the overestimate is at most {@code epsilon * totalCount()}.
+ * </p>
+ * <p>
+ * The counters are kept in an {@link AtomicLongArray}, one row of {@code width} counters per hash function,
+ * the columns are derived from a 64-bit hash using double hashing.
+ * </p>
+ *
+ * @see Hash#hash64(CharSequence)
+ */
+@Beta
+public class CountMinSketch {
+
+    private static final byte FORMAT = 1;
+    // the largest array size some JVMs can allocate
+    private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray counters;
+    private final AtomicLong totalCount;
+
+    /**
+     * @param depth the number of rows (hash functions)
+     * @param width the number of counters per row
+     */
+    public CountMinSketch(int depth, int width) {
+        this(depth, width, new AtomicLongArray(checkedSize(depth, width)), 0);
+    }
+
+    private CountMinSketch(int depth, int width, AtomicLongArray counters, long totalCount) {
+        this.depth = depth;
+        this.width = width;
+        this.counters = counters;
+        this.totalCount = new AtomicLong(totalCount);
+    }
+
+    /**
+     * Creates a sketch with the given error bounds
+     *
+     * @param epsilon    the relative overestimate, between 0 and 1 exclusive
+     * @param confidence the probability of the overestimate being within bounds, between 0 and 1 exclusive
+     * @return the sketch
+     */
+    public static CountMinSketch create(double epsilon, double confidence) {
+        checkArgument(epsilon > 0 && epsilon < 1, format("Invalid epsilon: 0 < %s < 1", epsilon));
+        checkArgument(confidence > 0 && confidence < 1, format("Invalid confidence: 0 < %s < 1", confidence));
+        int width = (int) Math.ceil(Math.E / epsilon);
+        int depth = (int) Math.ceil(Math.log(1 / (1 - confidence)));
+        return new CountMinSketch(Math.max(1, depth), width);
+    }
+
+    /**
+     * @param element the element to count
+     * @param count   the number of occurrences to add
+     */
+    public void add(CharSequence element, long count) {
+        add(hash64(element), count);
+    }
+
+    /**
+     * @param hash  the 64-bit hash of the element to count
+     * @param count the number of occurrences to add
+     */
+    public void add(long hash, long count) {
+        checkArgument(count >= 0, format("Invalid count: %s >= 0", count));
+        long secondHash = mix64(hash);
+        for (int row = 0; row < depth; row++) {
+            counters.addAndGet(index(row, hash, secondHash), count);
+        }
+        totalCount.addAndGet(count);
+    }
+
+    /**
+     * @param element the element to estimate
+     * @return the estimated number of occurrences, never less than the actual number
+     */
+    public long estimateCount(CharSequence element) {
+        return estimateCount(hash64(element));
+    }
+
+    /**
+     * @param hash the 64-bit hash of the element to estimate
+     * @return the estimated number of occurrences, never less than the actual number
+     */
+    public long estimateCount(long hash) {
+        long secondHash = mix64(hash);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, hash, secondHash)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds all counts of the other sketch to this sketch
+     *
+     * @param other the sketch created with the same parameters
+     */
+    public void merge(CountMinSketch other) {
+        checkArgument(other != null, "Expected non-null other");
+        checkArgument(other.depth == depth && other.width == width,
+                "Incompatible sketches: %s and %s", this, other);
+        for (int i = 0; i < counters.length(); i++) {
+            counters.addAndGet(i, other.counters.get(i));
+        }
+        totalCount.addAndGet(other.totalCount());
+    }
+
+    /**
+     * @return the sum of all added counts
+     */
+    public long totalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * @return the number of rows (hash functions)
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * @return the number of counters per row
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Serializes the sketch, the result can be read with {@link #fromByteArray(byte[])}
+     *
+     * @return the serialized sketch
+     * @throws IllegalStateException if the sketch is too large to serialize into a byte array
+     */
+    public byte[] toByteArray() {
+        long size = 1 + 4 + 4 + 8 + (long) counters.length() * 8;
+        checkState(size <= MAX_ARRAY_SIZE, format("Too large to serialize: %s > %s bytes", size, MAX_ARRAY_SIZE));
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.put(FORMAT).putInt(depth).putInt(width).putLong(totalCount());
+        for (int i = 0; i < counters.length(); i++) {
+            buffer.putLong(counters.get(i));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param bytes the sketch serialized with {@link #toByteArray()}
+     * @return the deserialized sketch
+     * @throws IllegalArgumentException if the bytes aren't a serialized sketch
+     */
+    public static CountMinSketch fromByteArray(byte[] bytes) {
+        checkArgument(bytes != null, "Expected non-null bytes");
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            checkArgument(buffer.get() == FORMAT, "Unsupported format");
+            int depth = buffer.getInt();
+            int width = buffer.getInt();
+            long totalCount = buffer.getLong();
+            int size = checkedSize(depth, width);
+            checkArgument(buffer.remaining() == size * 8L,
+                    "Invalid count-min sketch: %s x %s, %s bytes", depth, width, bytes.length);
+            AtomicLongArray counters = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                counters.set(i, buffer.getLong());
+            }
+            return new CountMinSketch(depth, width, counters, totalCount);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated count-min sketch", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("CountMinSketch.of(%s x %s, %s total)", depth, width, totalCount());
+    }
+
+    private int index(int row, long hash, long secondHash) {
+        return row * width + (int) (((hash + row * secondHash) & Long.MAX_VALUE) % width);
+    }
+
+    private static int checkedSize(int depth, int width) {
+        checkArgument(depth > 0, format("Invalid depth: %s > 0", depth));
+        checkArgument(width > 0, format("Invalid width: %s > 0", width));
+        long size = (long) depth * width;
+        checkArgument(size <= Integer.MAX_VALUE, "Sketch too large: %s x %s", depth, width);
+        return (int) size;
+    }
+}
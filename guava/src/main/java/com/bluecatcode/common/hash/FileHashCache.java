@@ -0,0 +1,234 @@
+package com.bluecatcode.common.hash;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.io.Files;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.base.Throwables.propagateIfInstanceOf;
+import static java.lang.String.format;
+
+/**
+ * Memoizes file digests keyed by file identity.
+ * <p>
+ * A file identity is the canonical path, the size and the last modified time of a file.
+ * The digest is recomputed only if any part of the identity changes.
+ * </p>
+ * <p>
+ * The in-memory tier is bounded and evicts the least recently used entries.
+ * The entries can be saved to and loaded from an on-disk index, so that a restarted process stays warm.
+ * </p>
+ * <b>Note:</b> a file rewritten with the same size within the file system timestamp resolution
+ * will not be detected as changed.
+ *
+ * @see Hash
+ * @see com.google.common.hash.Hashing
+ */
+@Beta
+public class FileHashCache {
+
+    private static final String INDEX_HEADER = "# FileHashCache ";
+    private static final char SEPARATOR = '\t';
+
+    private final HashFunction function;
+    private final Cache<FileIdentity, HashCode> cache;
+
+    /**
+     * @param function    the hash function to use
+     * @param maximumSize the maximum number of digests kept in memory
+     */
+    public FileHashCache(HashFunction function, long maximumSize) {
+        checkArgument(function != null, "Expected non-null function");
+        checkArgument(maximumSize > 0, format("Invalid maximum size: %s > 0", maximumSize));
+        this.function = function;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the digest of the file, computing it only if the file identity is not cached
+     *
+     * @param file the file to hash
+     * @return the file digest
+     * @throws IOException              if the file can't be read
+     * @throws IllegalArgumentException if the file isn't a normal file
+     */
+    public HashCode hash(File file) throws IOException {
+        checkArgument(file != null, "Expected non-null file");
+        final File canonicalFile = file.getCanonicalFile();
+        checkArgument(canonicalFile.isFile(), "File isn't normal file: '%s'", file);
+
+        FileIdentity identity = new FileIdentity(canonicalFile.getPath(),
+                canonicalFile.length(), canonicalFile.lastModified());
+        try {
+            return cache.get(identity, new Callable<HashCode>() {
+                @Override
+                public HashCode call() throws IOException {
+                    return Files.asByteSource(canonicalFile).hash(function);
+                }
+            });
+        } catch (ExecutionException e) {
+            propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the digest of the file as a two-digit unsigned hexadecimal number in lower case
+     *
+     * @param file the file to hash
+     * @return the file digest
+     * @throws IOException if the file can't be read
+     * @see HashCode#toString()
+     */
+    public String hashAsString(File file) throws IOException {
+        return hash(file).toString();
+    }
+
+    /**
+     * @return the cache hit, miss, load and eviction statistics
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the number of digests kept in memory
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Discards all cached digests
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Loads the entries from the on-disk index, missing index file is ignored
+     *
+     * @param index the index file
+     * @return the number of entries loaded
+     * @throws IOException              if the index can't be read
+     * @throws IllegalArgumentException if the index was written for a different hash function or is malformed
+     */
+    public int load(File index) throws IOException {
+        checkArgument(index != null, "Expected non-null index");
+        if (!index.exists()) {
+            return 0;
+        }
+        int loaded = 0;
+        try (BufferedReader reader = Files.newReader(index, UTF_8)) {
+            String header = reader.readLine();
+            checkArgument(header == null || header.equals(INDEX_HEADER + function),
+                    "Index '%s' doesn't match the hash function %s: '%s'", index, function, header);
+            for (String line; (line = reader.readLine()) != null; ) {
+                String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+                checkArgument(fields.length == 4, "Malformed index '%s' entry: '%s'", index, line);
+                FileIdentity identity = new FileIdentity(fields[0],
+                        Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                cache.put(identity, HashCode.fromString(fields[3]));
+                loaded++;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(format("Malformed index '%s'", index), e);
+        }
+        return loaded;
+    }
+
+    /**
+     * Replaces the on-disk index with the entries kept in memory,
+     * entries with paths containing tabs or line breaks are skipped.
+     * The index is written to a temporary file first and then renamed,
+     * so a crash never leaves a partially written index behind.
+     *
+     * @param index the index file
+     * @return the number of entries saved
+     * @throws IOException if the index can't be written
+     */
+    public int save(File index) throws IOException {
+        checkArgument(index != null, "Expected non-null index");
+        File absoluteIndex = index.getAbsoluteFile();
+        File temporary = File.createTempFile(absoluteIndex.getName(), ".tmp", absoluteIndex.getParentFile());
+        int saved = 0;
+        try {
+            try (BufferedWriter writer = Files.newWriter(temporary, UTF_8)) {
+                writer.append(INDEX_HEADER).append(function.toString()).append('\n');
+                for (Map.Entry<FileIdentity, HashCode> entry : cache.asMap().entrySet()) {
+                    FileIdentity identity = entry.getKey();
+                    if (identity.path.indexOf(SEPARATOR) >= 0 || identity.path.indexOf('\n') >= 0) {
+                        continue;
+                    }
+                    writer.append(identity.path).append(SEPARATOR)
+                            .append(String.valueOf(identity.size)).append(SEPARATOR)
+                            .append(String.valueOf(identity.lastModified)).append(SEPARATOR)
+                            .append(entry.getValue().toString()).append('\n');
+                    saved++;
+                }
+            }
+            Files.move(temporary, absoluteIndex);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temporary.delete();
+        }
+        return saved;
+    }
+
+    @Override
+    public String toString() {
+        return format("FileHashCache.of(%s, %s)", function, cache.stats());
+    }
+
+    private static final class FileIdentity {
+
+        private final String path;
+        private final long size;
+        private final long lastModified;
+
+        FileIdentity(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object other) {
+            if (this == other) return true;
+            if (other == null || getClass() != other.getClass()) return false;
+            FileIdentity that = (FileIdentity) other;
+            return size == that.size
+                    && lastModified == that.lastModified
+                    && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(path, size, lastModified);
+        }
+
+        @Override
+        public String toString() {
+            return format("FileIdentity.of(%s, %s, %s)", path, size, lastModified);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.google.common.base.Charsets;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.hash.Hashing.*;
 
 /**
@@ -18,6 +19,9 @@ import static com.google.common.hash.Hashing.*;
 @Beta
 public final class Hash {
 
+    private static final long FNV64_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV64_PRIME = 0x100000001b3L;
+
     /**
      * Creates a UTF-8 encoded hash using the hash function
      *
@@ -77,6 +81,59 @@ public final class Hash {
         return newHash(input, sha512()).toString();
     }
 
+    /**
+     * Creates a UTF-8 encoded HMAC-SHA256 as string, as a two-digit unsigned
+     * hexadecimal number in lower case.
+     * <p>
+     * The MAC is initialised on each call and nothing is kept for the key,
+     * keep an {@link Hmac} per key to sign repeatedly with the same key.
+     * </p>
+     *
+     * @param key   UTF-8 encoded secret key
+     * @param input string to sign
+     * @return encoded string
+     * @see Hmac
+     */
+    public static String hmacSha256AsString(String key, String input) {
+        checkArgument(key != null && !key.isEmpty(), "Expected non-empty key");
+        return Hmac.hmacSha256(key).hashAsStringOnce(input);
+    }
+
+    /**
+     * Creates a fast, non-cryptographic 64-bit hash of the UTF-16 code units of the input.
+     * <p>
+     * Does not allocate, which makes it suitable for hot lookup paths, e.g. node selection.
+     * The result is stable across JVMs, but <b>must not</b> be used for security purposes.
+     * </p>
+     *
+     * @param input characters to hash
+     * @return 64-bit hash value
+     * @see #mix64(long)
+     */
+    public static long hash64(CharSequence input) {
+        long hash = FNV64_OFFSET_BASIS;
+        for (int i = 0, length = input.length(); i < length; i++) {
+            hash = (hash ^ input.charAt(i)) * FNV64_PRIME;
+        }
+        return mix64(hash ^ input.length());
+    }
+
+    /**
+     * Scrambles all bits of the value, so that every input bit affects every output bit
+     * (the 64-bit finalization step of MurmurHash3).
+     *
+     * @param value value to mix
+     * @return mixed value
+     */
+    public static long mix64(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
     private Hash() {
     	throw new UnsupportedOperationException("Private constructor");
     }
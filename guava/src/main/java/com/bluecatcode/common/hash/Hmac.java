@@ -0,0 +1,268 @@
+package com.bluecatcode.common.hash;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Keyed-hash message authentication codes (HMAC) with cached, pre-initialised {@link Mac} instances.
+ * <p>
+ * Looking up the provider and scheduling the key in {@link Mac#getInstance(String)} and {@link Mac#init(java.security.Key)}
+ * is expensive, so an {@code Hmac} initialises the {@link Mac} once per key and hands each thread its own
+ * copy (cloned from the initialised prototype when the provider supports it).
+ * </p>
+ * Create one {@code Hmac} per key and share it between threads, e.g.
+ * <pre>{@code
+ * Hmac hmac = Hmac.hmacSha256(secret);
+ * String signature = hmac.hashAsString(payload);
+ * }</pre>
+ *
+ * @see Hash#hmacSha256AsString(String, String)
+ */
+@Beta
+public class Hmac {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final String algorithm;
+    private final SecretKeySpec key;
+    private final Mac prototype;
+    private final ThreadLocal<Signer> signers = new ThreadLocal<Signer>() {
+        @Override
+        protected Signer initialValue() {
+            return new Signer(newMac());
+        }
+    };
+
+    /**
+     * @param algorithm the MAC algorithm, e.g. {@code HmacSHA256}
+     * @param key       the secret key
+     * @throws IllegalArgumentException if the algorithm isn't available or the key is invalid
+     */
+    public Hmac(String algorithm, byte[] key) {
+        checkArgument(algorithm != null, "Expected non-null algorithm");
+        checkArgument(key != null && key.length > 0, "Expected non-empty key");
+        this.algorithm = algorithm;
+        this.key = new SecretKeySpec(key, algorithm);
+        try {
+            this.prototype = Mac.getInstance(algorithm);
+            this.prototype.init(this.key);
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalArgumentException(format("Can't initialise %s", algorithm), e);
+        }
+    }
+
+    /**
+     * @param key the secret key
+     * @return the HMAC-SHA256 for the key
+     */
+    public static Hmac hmacSha256(byte[] key) {
+        return new Hmac("HmacSHA256", key);
+    }
+
+    /**
+     * @param key the secret key, UTF-8 encoded
+     * @return the HMAC-SHA256 for the key
+     */
+    public static Hmac hmacSha256(String key) {
+        checkArgument(key != null, "Expected non-null key");
+        return hmacSha256(key.getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * Returns the current thread's signer, reset and ready for streaming updates.
+     * <p>
+     * The signer is reused by all calls on the same thread, <b>must not</b> be shared with other threads
+     * and is valid until the next call to any method of this {@code Hmac} on the same thread.
+     * </p>
+     *
+     * @return the signer
+     */
+    public Signer signer() {
+        Signer signer = signers.get();
+        signer.mac.reset();
+        return signer;
+    }
+
+    /**
+     * @param input the data to sign
+     * @return the MAC
+     */
+    public HashCode hash(byte[] input) {
+        checkArgument(input != null, "Expected non-null input");
+        return HashCode.fromBytes(signer().update(input, 0, input.length).mac.doFinal());
+    }
+
+    /**
+     * @param input the data to sign, consumed from its position to its limit
+     * @return the MAC
+     */
+    public HashCode hash(ByteBuffer input) {
+        return HashCode.fromBytes(signer().update(input).mac.doFinal());
+    }
+
+    /**
+     * Creates a MAC of the UTF-8 encoded input as string, as a two-digit unsigned
+     * hexadecimal number in lower case.
+     *
+     * @param input string to sign
+     * @return encoded string
+     */
+    public String hashAsString(String input) {
+        checkArgument(input != null, "Expected non-null input");
+        return hashAsString(signer(), input);
+    }
+
+    /**
+     * Signs with the initialised prototype, without creating a thread-local signer,
+     * for an {@code Hmac} used only once by the calling thread
+     */
+    String hashAsStringOnce(String input) {
+        checkArgument(input != null, "Expected non-null input");
+        return hashAsString(new Signer(prototype), input);
+    }
+
+    private static String hashAsString(Signer signer, String input) {
+        byte[] bytes = input.getBytes(Charsets.UTF_8);
+        signer.update(bytes, 0, bytes.length);
+        StringBuilder builder = new StringBuilder(signer.macLength() * 2);
+        signer.doFinalHex(builder);
+        return builder.toString();
+    }
+
+    /**
+     * @return the MAC algorithm
+     */
+    public String algorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public String toString() {
+        return format("Hmac.of(%s)", algorithm);
+    }
+
+    private Mac newMac() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                Mac mac = Mac.getInstance(algorithm, prototype.getProvider());
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException impossible) {
+                throw new IllegalStateException(impossible);
+            }
+        }
+    }
+
+    /**
+     * A thread-confined, reusable MAC computation
+     *
+     * @see Hmac#signer()
+     */
+    public static final class Signer {
+
+        private final Mac mac;
+        private final byte[] digest;
+
+        Signer(Mac mac) {
+            this.mac = mac;
+            this.digest = new byte[mac.getMacLength()];
+        }
+
+        /**
+         * @param input the data to sign, consumed from its position to its limit
+         * @return this signer
+         */
+        public Signer update(ByteBuffer input) {
+            checkArgument(input != null, "Expected non-null input");
+            mac.update(input);
+            return this;
+        }
+
+        /**
+         * @param input  the data to sign
+         * @param offset the offset in the input
+         * @param length the number of bytes to sign
+         * @return this signer
+         */
+        public Signer update(byte[] input, int offset, int length) {
+            checkArgument(input != null, "Expected non-null input");
+            mac.update(input, offset, length);
+            return this;
+        }
+
+        /**
+         * @return the MAC length in bytes
+         */
+        public int macLength() {
+            return digest.length;
+        }
+
+        /**
+         * Finishes the computation, writing the MAC into the output and resetting the signer
+         *
+         * @param output the output buffer
+         * @param offset the offset in the output
+         * @return the number of bytes written
+         */
+        public int doFinal(byte[] output, int offset) {
+            checkArgument(output != null, "Expected non-null output");
+            checkArgument(offset >= 0 && output.length - offset >= digest.length,
+                    "Output too small: %s bytes at %s for %s bytes", output.length, offset, digest.length);
+            try {
+                mac.doFinal(output, offset);
+            } catch (GeneralSecurityException impossible) {
+                throw new IllegalStateException(impossible);
+            }
+            return digest.length;
+        }
+
+        /**
+         * Finishes the computation, writing the MAC as lower case hexadecimal digits into the output
+         * and resetting the signer
+         *
+         * @param output the output buffer
+         * @param offset the offset in the output
+         * @return the number of characters written
+         */
+        public int doFinalHex(char[] output, int offset) {
+            checkArgument(output != null, "Expected non-null output");
+            checkArgument(offset >= 0 && output.length - offset >= digest.length * 2,
+                    "Output too small: %s chars at %s for %s chars", output.length, offset, digest.length * 2);
+            doFinal(digest, 0);
+            for (byte b : digest) {
+                output[offset++] = HEX_DIGITS[(b >> 4) & 0xf];
+                output[offset++] = HEX_DIGITS[b & 0xf];
+            }
+            return digest.length * 2;
+        }
+
+        /**
+         * Finishes the computation, appending the MAC as lower case hexadecimal digits to the output
+         * and resetting the signer
+         *
+         * @param output the output to append to
+         * @return the output
+         */
+        public StringBuilder doFinalHex(StringBuilder output) {
+            checkArgument(output != null, "Expected non-null output");
+            doFinal(digest, 0);
+            for (byte b : digest) {
+                output.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+            return output;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.bluecatcode.common.hash;
+
+import com.google.common.annotations.Beta;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.bluecatcode.common.hash.Hash.hash64;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A thread-safe, mergeable HyperLogLog cardinality estimator.
+ * <p>
+ * Estimates the number of distinct elements with a relative standard error of about
+ * {@code 1.04 / sqrt(2^precision)}, using {@code 2^precision} registers of 6 bits.
+ * </p>
+ * <p>
+ * The registers are packed ten per word in an {@link AtomicLongArray} and updated with lock-free compare-and-set.
+ * </p>
+ *
+ * @see Hash#hash64(CharSequence)
+ */
+@Beta
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private static final byte FORMAT = 1;
+    private static final int REGISTER_BITS = 6;
+    private static final int REGISTERS_PER_WORD = Long.SIZE / REGISTER_BITS;
+    private static final long REGISTER_MASK = (1L << REGISTER_BITS) - 1;
+
+    private final int precision;
+    private final AtomicLongArray words;
+
+    /**
+     * @param precision the number of index bits, between {@value #MIN_PRECISION} and {@value #MAX_PRECISION}
+     */
+    public HyperLogLog(int precision) {
+        this(precision, new AtomicLongArray(wordCount(precision)));
+    }
+
+    private HyperLogLog(int precision, AtomicLongArray words) {
+        this.precision = precision;
+        this.words = words;
+    }
+
+    /**
+     * @param element the element to add
+     * @return true if the estimate changed
+     */
+    public boolean add(CharSequence element) {
+        return add(hash64(element));
+    }
+
+    /**
+     * @param hash the 64-bit hash of the element to add, must be uniformly distributed
+     * @return true if the estimate changed
+     */
+    public boolean add(long hash) {
+        int register = (int) (hash >>> (Long.SIZE - precision));
+        // the sentinel bit bounds the rank to 64 - precision + 1
+        long rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        return updateRegister(register, rank);
+    }
+
+    /**
+     * @return the estimated number of distinct elements added
+     */
+    public long cardinality() {
+        int registers = 1 << precision;
+        double sum = 0;
+        int zeros = 0;
+        for (int register = 0; register < registers; register++) {
+            long value = register(register);
+            sum += 1.0 / (1L << value);
+            if (value == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(registers) * registers * registers / sum;
+        if (estimate <= 2.5 * registers && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = registers * Math.log((double) registers / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Adds all elements of the other estimator to this estimator
+     *
+     * @param other the estimator created with the same precision
+     */
+    public void merge(HyperLogLog other) {
+        checkArgument(other != null, "Expected non-null other");
+        checkArgument(other.precision == precision, "Incompatible precisions: %s and %s", precision, other.precision);
+        int registers = 1 << precision;
+        for (int register = 0; register < registers; register++) {
+            updateRegister(register, other.register(register));
+        }
+    }
+
+    /**
+     * @return the number of index bits
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Serializes the estimator, the result can be read with {@link #fromByteArray(byte[])}
+     *
+     * @return the serialized estimator
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 1 + words.length() * 8);
+        buffer.put(FORMAT).put((byte) precision);
+        for (int i = 0; i < words.length(); i++) {
+            buffer.putLong(words.get(i));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param bytes the estimator serialized with {@link #toByteArray()}
+     * @return the deserialized estimator
+     * @throws IllegalArgumentException if the bytes aren't a serialized estimator
+     */
+    public static HyperLogLog fromByteArray(byte[] bytes) {
+        checkArgument(bytes != null, "Expected non-null bytes");
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            checkArgument(buffer.get() == FORMAT, "Unsupported format");
+            int precision = buffer.get();
+            int length = wordCount(precision);
+            checkArgument(buffer.remaining() == length * 8L,
+                    "Invalid hyperloglog: %s precision, %s bytes", precision, bytes.length);
+            AtomicLongArray words = new AtomicLongArray(length);
+            for (int i = 0; i < length; i++) {
+                words.set(i, buffer.getLong());
+            }
+            return new HyperLogLog(precision, words);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated hyperloglog", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("HyperLogLog.of(%s precision, ~%s distinct)", precision, cardinality());
+    }
+
+    private long register(int register) {
+        int shift = (register % REGISTERS_PER_WORD) * REGISTER_BITS;
+        return (words.get(register / REGISTERS_PER_WORD) >>> shift) & REGISTER_MASK;
+    }
+
+    private boolean updateRegister(int register, long rank) {
+        int index = register / REGISTERS_PER_WORD;
+        int shift = (register % REGISTERS_PER_WORD) * REGISTER_BITS;
+        long mask = REGISTER_MASK << shift;
+        for (long current; ((current = words.get(index)) & mask) >>> shift < rank; ) {
+            if (words.compareAndSet(index, current, (current & ~mask) | (rank << shift))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double alpha(int registers) {
+        switch (registers) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registers);
+        }
+    }
+
+    private static int wordCount(int precision) {
+        checkArgument(precision >= MIN_PRECISION && precision <= MAX_PRECISION,
+                format("Invalid precision: %s <= %s <= %s", MIN_PRECISION, precision, MAX_PRECISION));
+        return ((1 << precision) + REGISTERS_PER_WORD - 1) / REGISTERS_PER_WORD;
+    }
+}
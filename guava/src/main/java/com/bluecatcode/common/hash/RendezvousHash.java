@@ -0,0 +1,141 @@
+package com.bluecatcode.common.hash;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableSet;
+
+import static com.bluecatcode.common.hash.Hash.hash64;
+import static com.bluecatcode.common.hash.Hash.mix64;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * Rendezvous (highest random weight) hashing.
+ * <p>
+ * Every node gets a pseudo-random score for a key, the key belongs to the node with the highest score.
+ * When a node joins or leaves only the keys won or lost by that node move.
+ * Compared to {@link ConsistentHashRing} it needs no virtual nodes and balances perfectly,
+ * but a lookup is {@code O(n)} in the number of nodes.
+ * </p>
+ * <p>
+ * Nodes are identified by their {@link Object#toString()}, which must be stable and unique.
+ * Lookups are lock-free and allocation-free, membership changes copy the node list.
+ * </p>
+ *
+ * @param <N> the node type
+ * @see ConsistentHashRing
+ * @see Hash#hash64(CharSequence)
+ */
+@Beta
+public class RendezvousHash<N> {
+
+    private volatile Members<N> members;
+
+    public RendezvousHash() {
+        this.members = new Members<>(ImmutableSet.<N>of());
+    }
+
+    /**
+     * Adds the node
+     *
+     * @param node the node to add
+     * @return true if the node was added, false if it was already present
+     */
+    public synchronized boolean add(N node) {
+        checkArgument(node != null, "Expected non-null node");
+        if (members.nodes.contains(node)) {
+            return false;
+        }
+        this.members = new Members<>(ImmutableSet.<N>builder().addAll(members.nodes).add(node).build());
+        return true;
+    }
+
+    /**
+     * Removes the node
+     *
+     * @param node the node to remove
+     * @return true if the node was removed, false if it wasn't present
+     */
+    public synchronized boolean remove(N node) {
+        checkArgument(node != null, "Expected non-null node");
+        if (!members.nodes.contains(node)) {
+            return false;
+        }
+        ImmutableSet.Builder<N> nodes = ImmutableSet.builder();
+        for (N member : members.nodes) {
+            if (!member.equals(node)) {
+                nodes.add(member);
+            }
+        }
+        this.members = new Members<>(nodes.build());
+        return true;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the node with the highest score for the key
+     * @throws IllegalStateException if there are no nodes
+     */
+    public N get(CharSequence key) {
+        return get(hash64(key));
+    }
+
+    /**
+     * @param keyHash the 64-bit hash of the key to look up
+     * @return the node with the highest score for the key
+     * @throws IllegalStateException if there are no nodes
+     */
+    @SuppressWarnings("unchecked")
+    public N get(long keyHash) {
+        Members<N> current = this.members;
+        long[] nodeHashes = current.hashes;
+        checkState(nodeHashes.length > 0, "Expected at least one node");
+
+        int best = 0;
+        long bestScore = Long.MIN_VALUE;
+        for (int i = 0; i < nodeHashes.length; i++) {
+            long score = mix64(keyHash ^ nodeHashes[i]);
+            // ties are resolved by the node hash, so that the result doesn't depend on insertion order
+            if (score > bestScore || (score == bestScore && nodeHashes[i] > nodeHashes[best])) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return (N) current.nodeArray[best];
+    }
+
+    /**
+     * @return the current nodes
+     */
+    public ImmutableSet<N> nodes() {
+        return members.nodes;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int size() {
+        return members.nodes.size();
+    }
+
+    @Override
+    public String toString() {
+        return format("RendezvousHash.of(%s)", members.nodes);
+    }
+
+    private static final class Members<N> {
+
+        private final ImmutableSet<N> nodes;
+        private final Object[] nodeArray;
+        private final long[] hashes;
+
+        Members(ImmutableSet<N> nodes) {
+            this.nodes = nodes;
+            this.nodeArray = nodes.toArray();
+            this.hashes = new long[nodeArray.length];
+            for (int i = 0; i < nodeArray.length; i++) {
+                hashes[i] = hash64(nodeArray[i].toString());
+            }
+        }
+    }
+}
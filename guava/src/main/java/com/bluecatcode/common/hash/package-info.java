@@ -9,6 +9,14 @@
  *
  * <ul>
  * <li>{@link com.bluecatcode.common.hash.Hash}
+ * <li>{@link com.bluecatcode.common.hash.FileHashCache}
+ * <li>{@link com.bluecatcode.common.hash.ConsistentHashRing}
+ * <li>{@link com.bluecatcode.common.hash.RendezvousHash}
+ * <li>{@link com.bluecatcode.common.hash.BloomFilter}
+ * <li>{@link com.bluecatcode.common.hash.CountMinSketch}
+ * <li>{@link com.bluecatcode.common.hash.HyperLogLog}
+ * <li>{@link com.bluecatcode.common.hash.Hmac}
+ * <li>{@link com.bluecatcode.common.hash.ContentDefinedChunker}
  * </ul>
  *
  * @see com.google.common.hash
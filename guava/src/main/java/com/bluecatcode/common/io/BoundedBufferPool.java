@@ -0,0 +1,234 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A pool of recyclable bounded buffers, to avoid allocating (and promoting) a large buffer per request.
+ * <p>
+ * The buffers are tiered by capacity class, powers of two from the minimum to the maximum capacity.
+ * A buffer is taken from the calling thread's cache first, then from the shared lock-free tier,
+ * and returned to the pool on {@link Buffer#close()}. Requests above the maximum capacity are not pooled.
+ * </p>
+ * <p>
+ * The shared tiers retain at most {@code maxRetainedBytes}, buffers that would exceed it are dropped.
+ * Each thread additionally caches one buffer per capacity class up to {@code threadLocalCapacity}.
+ * </p>
+ * Usage:
+ * <pre>{@code
+ * try (BoundedBufferPool.Buffer buffer = pool.acquire(8192, limit)) {
+ *     buffer.write(bytes);
+ *     buffer.writeTo(out);
+ * }
+ * }</pre>
+ */
+@Beta
+public class BoundedBufferPool {
+
+    private final int minCapacity;
+    private final int maxCapacity;
+    private final int threadLocalCapacity;
+    private final long maxRetainedBytes;
+    private final Queue<byte[]>[] tiers;
+    private final ThreadLocal<byte[][]> threadLocalCaches;
+
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+
+    /**
+     * @param minCapacity         the smallest capacity class, must be a power of two
+     * @param maxCapacity         the largest capacity class, must be a power of two
+     * @param threadLocalCapacity the largest capacity class cached per thread, zero to disable the thread caches
+     * @param maxRetainedBytes    the maximum number of bytes retained by the shared tiers
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BoundedBufferPool(int minCapacity, int maxCapacity, int threadLocalCapacity, long maxRetainedBytes) {
+        checkArgument(minCapacity > 0 && Integer.bitCount(minCapacity) == 1,
+                format("Invalid min capacity: %s must be a positive power of two", minCapacity));
+        checkArgument(maxCapacity >= minCapacity && Integer.bitCount(maxCapacity) == 1,
+                format("Invalid max capacity: %s must be a power of two >= %s", maxCapacity, minCapacity));
+        checkArgument(threadLocalCapacity >= 0, format("Invalid thread local capacity: %s >= 0", threadLocalCapacity));
+        checkArgument(maxRetainedBytes >= 0, format("Invalid max retained bytes: %s >= 0", maxRetainedBytes));
+        this.minCapacity = minCapacity;
+        this.maxCapacity = maxCapacity;
+        this.threadLocalCapacity = threadLocalCapacity;
+        this.maxRetainedBytes = maxRetainedBytes;
+
+        final int tierCount = tier(maxCapacity) + 1;
+        this.tiers = new Queue[tierCount];
+        for (int i = 0; i < tierCount; i++) {
+            tiers[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.threadLocalCaches = new ThreadLocal<byte[][]>() {
+            @Override
+            protected byte[][] initialValue() {
+                return new byte[tierCount][];
+            }
+        };
+    }
+
+    /**
+     * Creates a pool of 4 KB to 16 MB buffers, caching up to 64 KB per thread and retaining up to 64 MB
+     *
+     * @return the pool
+     */
+    public static BoundedBufferPool create() {
+        return new BoundedBufferPool(1 << 12, 1 << 24, 1 << 16, 1L << 26);
+    }
+
+    /**
+     * @param limit the maximum number of bytes
+     * @return a buffer of the smallest capacity class
+     */
+    public Buffer acquire(int limit) {
+        return acquire(minCapacity, limit);
+    }
+
+    /**
+     * @param capacity the initial capacity, rounded up to the capacity class
+     * @param limit    the maximum number of bytes
+     * @return a buffer with at least the initial capacity or the limit, whichever is smaller
+     */
+    public Buffer acquire(int capacity, int limit) {
+        checkArgument(capacity > 0, format("Invalid capacity: %s > 0", capacity));
+        checkArgument(limit > 0, format("Invalid limit: %s > 0", limit));
+        int required = Math.min(capacity, limit);
+        if (required > maxCapacity) {
+            misses.incrementAndGet();
+            return new Buffer(this, new byte[required], limit);
+        }
+
+        int tier = tier(required);
+        byte[] buffer = null;
+        byte[][] cache = threadLocalCaches.get();
+        if (cache[tier] != null) {
+            buffer = cache[tier];
+            cache[tier] = null;
+        } else {
+            buffer = tiers[tier].poll();
+            if (buffer != null) {
+                retainedBytes.addAndGet(-buffer.length);
+            }
+        }
+        if (buffer != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            buffer = new byte[minCapacity << tier];
+        }
+        return new Buffer(this, buffer, limit);
+    }
+
+    /**
+     * @return the number of acquisitions served from the pool
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of acquisitions that allocated a new buffer
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of released buffers not retained
+     */
+    public long drops() {
+        return drops.get();
+    }
+
+    /**
+     * @return the number of bytes retained by the shared tiers, not including the thread caches
+     */
+    public long retainedBytes() {
+        return retainedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return format("BoundedBufferPool.of(%s hits, %s misses, %s drops, %s retained bytes)",
+                hits(), misses(), drops(), retainedBytes());
+    }
+
+    void release(byte[] buffer) {
+        int length = buffer.length;
+        if (length < minCapacity || length > maxCapacity || Integer.bitCount(length) != 1) {
+            drops.incrementAndGet();
+            return;
+        }
+        int tier = tier(length);
+        if (length <= threadLocalCapacity) {
+            byte[][] cache = threadLocalCaches.get();
+            if (cache[tier] == null) {
+                cache[tier] = buffer;
+                return;
+            }
+        }
+        for (long retained; (retained = retainedBytes.get()) + length <= maxRetainedBytes; ) {
+            if (retainedBytes.compareAndSet(retained, retained + length)) {
+                tiers[tier].offer(buffer);
+                return;
+            }
+        }
+        drops.incrementAndGet();
+    }
+
+    private int tier(int capacity) {
+        if (capacity <= minCapacity) {
+            return 0;
+        }
+        return (Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1)) - Integer.numberOfTrailingZeros(minCapacity);
+    }
+
+    /**
+     * A pooled bounded buffer, returned to its pool on {@link #close()}.
+     * <p>
+     * The buffer <b>must not</b> be used after it is closed.
+     * </p>
+     */
+    public static final class Buffer extends UnsynchronizedBoundedByteArrayOutputStream {
+
+        private final BoundedBufferPool pool;
+        private boolean closed;
+
+        Buffer(BoundedBufferPool pool, byte[] buffer, int limit) {
+            super(buffer, limit);
+            this.pool = pool;
+        }
+
+        /**
+         * Grows to the next capacity class, so that the grown buffer can be pooled,
+         * but never beyond the limit, a buffer grown to a limit between classes isn't pooled
+         */
+        @Override
+        int newCapacity(int minCapacity) {
+            int capacityClass = Integer.highestOneBit(minCapacity - 1) << 1;
+            if (capacityClass < minCapacity || capacityClass > pool.maxCapacity) {
+                return super.newCapacity(minCapacity);
+            }
+            return Math.min(Math.max(capacityClass, pool.minCapacity), limit());
+        }
+
+        /**
+         * Returns the internal buffer to the pool, closing an already closed buffer has no effect
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pool.release(detach());
+            }
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.google.common.annotations.Beta;
 import javax.annotation.Nonnull;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
@@ -61,4 +63,99 @@ public class BoundedByteArrayOutputStream extends ByteArrayOutputStream {
         super.write(bytes, offset, length);
     }
 
+    /**
+     * Decodes the written bytes straight from the internal buffer, without copying them first
+     *
+     * @param charset the charset to decode with
+     * @return the decoded string
+     */
+    public synchronized String toString(Charset charset) {
+        checkArgument(charset != null, "Expected non-null charset");
+        return new String(buf, 0, count, charset);
+    }
+
+    /**
+     * Decodes at most the first {@code maxBytes} written bytes, e.g. to log only a prefix of a large capture.
+     * A character cut by the prefix is left out.
+     *
+     * @param charset  the charset to decode with
+     * @param maxBytes the maximum number of bytes to decode
+     * @return the decoded prefix
+     */
+    public synchronized String toString(Charset charset, int maxBytes) {
+        checkArgument(charset != null, "Expected non-null charset");
+        checkArgument(maxBytes >= 0, format("Invalid max bytes: %s >= 0", maxBytes));
+        if (maxBytes >= count) {
+            return new String(buf, 0, count, charset);
+        }
+        StringBuilder builder = new StringBuilder(maxBytes);
+        try {
+            Decoders.decode(buf, 0, maxBytes, charset, builder, false);
+        } catch (IOException impossible) {
+            throw new IllegalStateException(impossible);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Decodes the written bytes straight from the internal buffer into the target,
+     * as many as the target can hold
+     *
+     * @param charset the charset to decode with
+     * @param target  the buffer to decode into
+     * @return the number of bytes decoded
+     */
+    public synchronized int decodeTo(Charset charset, CharBuffer target) {
+        return decodeTo(charset, target, count);
+    }
+
+    /**
+     * Decodes at most the first {@code maxBytes} written bytes straight from the internal buffer into the target,
+     * as many as the target can hold
+     *
+     * @param charset  the charset to decode with
+     * @param target   the buffer to decode into
+     * @param maxBytes the maximum number of bytes to decode
+     * @return the number of bytes decoded
+     */
+    public synchronized int decodeTo(Charset charset, CharBuffer target, int maxBytes) {
+        checkArgument(charset != null, "Expected non-null charset");
+        checkArgument(target != null, "Expected non-null target");
+        checkArgument(maxBytes >= 0, format("Invalid max bytes: %s >= 0", maxBytes));
+        int length = Math.min(maxBytes, count);
+        return Decoders.decode(buf, 0, length, charset, target, length == count);
+    }
+
+    /**
+     * Decodes the written bytes straight from the internal buffer and appends them to the target
+     *
+     * @param charset the charset to decode with
+     * @param target  the appendable to append to
+     * @param <A>     the appendable type
+     * @return the target
+     * @throws IOException if the target can't be appended to
+     */
+    public synchronized <A extends Appendable> A decodeTo(Charset charset, A target) throws IOException {
+        return decodeTo(charset, target, count);
+    }
+
+    /**
+     * Decodes at most the first {@code maxBytes} written bytes straight from the internal buffer
+     * and appends them to the target. A character cut by the prefix is left out.
+     *
+     * @param charset  the charset to decode with
+     * @param target   the appendable to append to
+     * @param maxBytes the maximum number of bytes to decode
+     * @param <A>      the appendable type
+     * @return the target
+     * @throws IOException if the target can't be appended to
+     */
+    public synchronized <A extends Appendable> A decodeTo(Charset charset, A target, int maxBytes) throws IOException {
+        checkArgument(charset != null, "Expected non-null charset");
+        checkArgument(target != null, "Expected non-null target");
+        checkArgument(maxBytes >= 0, format("Invalid max bytes: %s >= 0", maxBytes));
+        int length = Math.min(maxBytes, count);
+        Decoders.decode(buf, 0, length, charset, target, length == count);
+        return target;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillCloseWhenClosed;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * An input stream that reads at most {@code limit} bytes and fails if the underlying stream has more,
+ * the counterpart of {@link BoundedByteArrayOutputStream} for untrusted input.
+ * <p>
+ * Unlike {@link com.google.common.io.ByteStreams#limit(InputStream, long)} it doesn't silently truncate,
+ * reading past the limit throws {@link IllegalArgumentException}. The {@code readAllBytes} methods
+ * read straight into a pre-sized or pooled buffer and fail fast if the expected length exceeds the limit.
+ * </p>
+ * <b>Not thread-safe</b>, marks are not supported.
+ */
+@Beta
+public class BoundedInputStream extends FilterInputStream {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final long limit;
+    private long count;
+
+    /**
+     * @param in    the input stream to read from
+     * @param limit the maximum number of bytes
+     */
+    public BoundedInputStream(@WillCloseWhenClosed InputStream in, long limit) {
+        super(in);
+        checkArgument(in != null, "Expected non-null input stream");
+        checkArgument(limit >= 0, format("Invalid limit: %s >= 0", limit));
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (count >= limit) {
+            return checkEndOfStream();
+        }
+        int b = in.read();
+        if (b >= 0) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (count >= limit) {
+            return checkEndOfStream();
+        }
+        int n = in.read(bytes, offset, (int) Math.min(length, limit - count));
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(Math.min(n, limit - count));
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), limit - count);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int limit) {
+        // not supported
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("Mark not supported");
+    }
+
+    /**
+     * Reads the rest of the stream, pre-sizing the buffer from {@link #available()}
+     *
+     * @return the bytes read
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the stream has more bytes than the limit
+     */
+    public byte[] readAllBytes() throws IOException {
+        return readAllBytes(-1);
+    }
+
+    /**
+     * Reads the rest of the stream into a buffer pre-sized from the length hint,
+     * with an exact hint the buffer is returned without copying.
+     *
+     * @param lengthHint the expected number of remaining bytes, e.g. a content length, or -1 if unknown
+     * @return the bytes read
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the length hint or the stream exceeds the limit
+     */
+    public byte[] readAllBytes(long lengthHint) throws IOException {
+        UnsynchronizedBoundedByteArrayOutputStream buffer =
+                new UnsynchronizedBoundedByteArrayOutputStream(initialCapacity(lengthHint), maxArraySize());
+        readAll(buffer);
+        return buffer.size() == buffer.buffer().length ? buffer.buffer() : buffer.toByteArray();
+    }
+
+    /**
+     * Reads the rest of the stream into a buffer from the pool, pre-sized from {@link #available()}.
+     * The caller <b>must</b> close the buffer to return it to the pool.
+     *
+     * @param pool the pool to take the buffer from
+     * @return the buffer with the bytes read
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the stream has more bytes than the limit
+     */
+    public BoundedBufferPool.Buffer readAllBytes(BoundedBufferPool pool) throws IOException {
+        checkArgument(pool != null, "Expected non-null pool");
+        BoundedBufferPool.Buffer buffer = pool.acquire(initialCapacity(-1), maxArraySize());
+        try {
+            readAll(buffer);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of bytes read or skipped
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return the maximum number of bytes
+     */
+    public long limit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return format("BoundedInputStream.of(%s, %s limit)", count, limit);
+    }
+
+    private int checkEndOfStream() throws IOException {
+        if (in.read() >= 0) {
+            throw new IllegalArgumentException(format("Reached the limit of the stream (%s > %s)", count + 1, limit));
+        }
+        return -1;
+    }
+
+    private int initialCapacity(long lengthHint) throws IOException {
+        long remaining = limit - count;
+        if (lengthHint > remaining) {
+            throw new IllegalArgumentException(format("Expected length exceeds the limit (%s > %s)",
+                    count + lengthHint, limit));
+        }
+        long capacity = lengthHint >= 0 ? lengthHint : Math.max(available(), Math.min(remaining, DEFAULT_CAPACITY));
+        return (int) Math.max(1, Math.min(capacity, maxArraySize()));
+    }
+
+    private int maxArraySize() {
+        return (int) Math.max(1, Math.min(limit - count, MAX_ARRAY_SIZE));
+    }
+
+    private void readAll(UnsynchronizedBoundedByteArrayOutputStream buffer) throws IOException {
+        while (true) {
+            if (buffer.size() == buffer.buffer().length) {
+                // probe for the end of stream before growing the buffer
+                int b = read();
+                if (b < 0) {
+                    return;
+                }
+                buffer.write(b);
+            } else if (buffer.readFrom(this) < 0) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes bytes without intermediate copies, with a fast path for ASCII and Latin-1
+ */
+final class Decoders {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private Decoders() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Decodes as many bytes as the target can hold, malformed and unmappable input is replaced
+     *
+     * @param bytes      the bytes to decode
+     * @param offset     the offset in the bytes
+     * @param length     the number of bytes to decode
+     * @param charset    the charset to decode with
+     * @param target     the buffer to decode into
+     * @param endOfInput false if more bytes may follow, an incomplete trailing character is then left undecoded
+     * @return the number of bytes decoded
+     */
+    static int decode(byte[] bytes, int offset, int length, Charset charset, CharBuffer target, boolean endOfInput) {
+        int decoded = decodeFast(bytes, offset, length, charset, target);
+        if (decoded == length || !target.hasRemaining()) {
+            return decoded;
+        }
+
+        CharsetDecoder decoder = newDecoder(charset);
+        decoded += decode(bytes, offset + decoded, length - decoded, decoder, target, endOfInput);
+        if (decoded == length && endOfInput) {
+            decoder.flush(target);
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes the bytes and appends the characters to the target in chunks,
+     * with a single decoder so that stateful charsets, e.g. UTF-16 with a byte order mark, decode across chunks
+     *
+     * @param bytes      the bytes to decode
+     * @param offset     the offset in the bytes
+     * @param length     the number of bytes to decode
+     * @param charset    the charset to decode with
+     * @param target     the appendable to append to
+     * @param endOfInput false if more bytes may follow, an incomplete trailing character is then left undecoded
+     * @return the number of bytes decoded
+     * @throws IOException if the target can't be appended to
+     */
+    static int decode(byte[] bytes, int offset, int length, Charset charset, Appendable target, boolean endOfInput)
+            throws IOException {
+        if (target instanceof StringBuilder) {
+            ((StringBuilder) target).ensureCapacity(((StringBuilder) target).length() + length);
+        }
+        CharBuffer chunk = CharBuffer.allocate(Math.min(Math.max(length, 16), CHUNK_SIZE));
+        CharsetDecoder decoder = null;
+        int decoded = 0;
+        while (decoded < length) {
+            int n = decodeFast(bytes, offset + decoded, length - decoded, charset, chunk);
+            if (decoded + n < length && chunk.hasRemaining()) {
+                if (decoder == null) {
+                    decoder = newDecoder(charset);
+                }
+                n += decode(bytes, offset + decoded + n, length - decoded - n, decoder, chunk, endOfInput);
+            }
+            append(chunk, target);
+            if (n == 0) {
+                // an incomplete trailing character
+                break;
+            }
+            decoded += n;
+        }
+        if (decoder != null && decoded == length && endOfInput) {
+            decoder.flush(chunk);
+            append(chunk, target);
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes Latin-1, and the leading ASCII bytes of ASCII and UTF-8, without a decoder
+     *
+     * @return the number of bytes decoded
+     */
+    private static int decodeFast(byte[] bytes, int offset, int length, Charset charset, CharBuffer target) {
+        int decoded = 0;
+        if (Charsets.ISO_8859_1.equals(charset)) {
+            decoded = Math.min(length, target.remaining());
+            for (int i = 0; i < decoded; i++) {
+                target.put((char) (bytes[offset + i] & 0xff));
+            }
+        } else if (Charsets.UTF_8.equals(charset) || Charsets.US_ASCII.equals(charset)) {
+            int max = Math.min(length, target.remaining());
+            while (decoded < max && bytes[offset + decoded] >= 0) {
+                target.put((char) bytes[offset + decoded++]);
+            }
+        }
+        return decoded;
+    }
+
+    private static int decode(byte[] bytes, int offset, int length, CharsetDecoder decoder,
+                              CharBuffer target, boolean endOfInput) {
+        ByteBuffer input = ByteBuffer.wrap(bytes, offset, length);
+        decoder.decode(input, target, endOfInput);
+        return input.position() - offset;
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static void append(CharBuffer chunk, Appendable target) throws IOException {
+        chunk.flip();
+        if (target instanceof StringBuilder) {
+            ((StringBuilder) target).append(chunk.array(), 0, chunk.limit());
+        } else {
+            target.append(chunk);
+        }
+        chunk.clear();
+    }
+}
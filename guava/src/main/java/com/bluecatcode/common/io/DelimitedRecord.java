@@ -0,0 +1,84 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, flyweight record of a {@link DelimitedReader}, the fields of one line.
+ * <p>
+ * The field views are allocated once per field position and reused for every record,
+ * so reading a record allocates nothing once the widest record was seen.
+ * </p>
+ * <b>Note:</b> the record and its fields are only valid for the duration of the callback
+ * they are passed to.
+ */
+@Beta
+public final class DelimitedRecord {
+
+    private CharSequence line;
+    private FieldView[] fields = new FieldView[16];
+    private int size;
+    private char[] unescaped = new char[128];
+
+    DelimitedRecord() {
+    }
+
+    /**
+     * @return the number of fields, at least one
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the field index
+     * @return the reused view of the field
+     */
+    public FieldView field(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Invalid field index: " + index);
+        }
+        return fields[index];
+    }
+
+    /**
+     * @return the line the fields are read from
+     */
+    public CharSequence line() {
+        return line;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("DelimitedRecord.of(");
+        for (int i = 0; i < size; i++) {
+            builder.append(i == 0 ? "" : ", ").append('\'').append(fields[i]).append('\'');
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * Starts a record, the unescaped fields of a line are never longer than the line
+     */
+    char[] reset(CharSequence line) {
+        this.line = line;
+        this.size = 0;
+        if (unescaped.length < line.length()) {
+            unescaped = new char[Math.max(line.length(), unescaped.length * 2)];
+        }
+        return unescaped;
+    }
+
+    FieldView next() {
+        if (size == fields.length) {
+            fields = Arrays.copyOf(fields, size * 2);
+        }
+        FieldView field = fields[size];
+        if (field == null) {
+            field = fields[size] = new FieldView();
+        }
+        size++;
+        return field;
+    }
+}
@@ -0,0 +1,371 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A bounded output stream with the limit semantics of {@link BoundedByteArrayOutputStream},
+ * that keeps the data off-heap in direct {@link ByteBuffer} slabs.
+ * <p>
+ * The slabs are taken from a {@link SlabPool} and returned to it on {@link #close()}, so the native memory
+ * is released deterministically to the pool instead of waiting for the garbage collector,
+ * and reused by the following streams. The written bytes can be handed to NIO channels without copying
+ * with {@link #readViews()} and {@link #writeTo(WritableByteChannel)}.
+ * </p>
+ * <b>Not thread-safe</b>, the stream is meant to have a single writer and <b>must</b> be closed.
+ *
+ * @see BoundedByteArrayOutputStream
+ * @see SegmentedBoundedByteArrayOutputStream
+ */
+@Beta
+public class DirectBoundedOutputStream extends OutputStream {
+
+    private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+
+    private final int limit;
+    private final SlabPool pool;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private ByteBuffer current;
+    private int count;
+
+    /**
+     * @param limit the maximum number of bytes
+     */
+    public DirectBoundedOutputStream(int limit) {
+        this(limit, SlabPool.shared());
+    }
+
+    /**
+     * @param limit the maximum number of bytes
+     * @param pool  the pool to take the slabs from
+     */
+    public DirectBoundedOutputStream(int limit, SlabPool pool) {
+        checkArgument(limit > 0, format("Invalid limit: %s > 0", limit));
+        checkArgument(pool != null, "Expected non-null pool");
+        this.limit = limit;
+        this.pool = pool;
+        this.current = pool.acquire();
+        this.slabs.add(current);
+    }
+
+    @Override
+    public void write(int b) {
+        if (count >= limit) {
+            throw new IllegalArgumentException(format("Reached the limit of the buffer (%s >= %s)", count, limit));
+        }
+        if (!current.hasRemaining()) {
+            nextSlab();
+        }
+        current.put((byte) b);
+        count++;
+    }
+
+    @Override
+    public void write(@Nonnull byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] bytes, int offset, int length) {
+        if ((offset < 0) || (offset > bytes.length)) {
+            throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+        }
+        if ((length < 0) || ((offset + length) > bytes.length) || ((offset + length) < 0)) {
+            throw new IndexOutOfBoundsException("Invalid length: " + length);
+        }
+        if (length == 0) {
+            return;
+        }
+
+        int newSize = checkedSize(length);
+        while (length > 0) {
+            if (!current.hasRemaining()) {
+                nextSlab();
+            }
+            int n = Math.min(length, current.remaining());
+            current.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+        }
+        count = newSize;
+    }
+
+    /**
+     * Writes the remaining bytes of the source, consuming it from its position to its limit
+     *
+     * @param source the bytes to write
+     */
+    public void write(ByteBuffer source) {
+        checkArgument(source != null, "Expected non-null source");
+        int length = source.remaining();
+        if (length == 0) {
+            return;
+        }
+
+        int newSize = checkedSize(length);
+        int sourceLimit = source.limit();
+        try {
+            while (source.hasRemaining()) {
+                if (!current.hasRemaining()) {
+                    nextSlab();
+                }
+                source.limit(source.position() + Math.min(source.remaining(), current.remaining()));
+                current.put(source);
+                source.limit(sourceLimit);
+            }
+        } finally {
+            source.limit(sourceLimit);
+        }
+        count = newSize;
+    }
+
+    /**
+     * Returns flipped views of the written bytes, one per slab, without copying.
+     * <p>
+     * Each view is positioned at zero with the limit at the written length, and is independent of the other views
+     * and of this stream, but shares the content, so the views <b>must not</b> be used after {@link #reset()}
+     * or {@link #close()}.
+     * </p>
+     *
+     * @return the views in order
+     */
+    public ByteBuffer[] readViews() {
+        ByteBuffer[] views = new ByteBuffer[slabs.size()];
+        for (int i = 0; i < views.length; i++) {
+            ByteBuffer view = slabs.get(i).duplicate();
+            view.flip();
+            views[i] = view;
+        }
+        return views;
+    }
+
+    /**
+     * Writes the complete contents of this stream to the blocking channel,
+     * with a single gathering write if the channel supports it
+     *
+     * @param channel the channel to write to
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    public long writeTo(@WillNotClose WritableByteChannel channel) throws IOException {
+        checkArgument(channel != null, "Expected non-null channel");
+        ByteBuffer[] views = readViews();
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            long written = 0;
+            int first = 0;
+            while (written < count) {
+                written += gathering.write(views, first, views.length - first);
+                while (first < views.length && !views[first].hasRemaining()) {
+                    first++;
+                }
+            }
+            return written;
+        }
+        for (ByteBuffer view : views) {
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the complete contents of this stream to the output stream
+     *
+     * @param out the output stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(@WillNotClose OutputStream out) throws IOException {
+        byte[] scratch = new byte[Math.min(count, 8192)];
+        for (ByteBuffer view : readViews()) {
+            while (view.hasRemaining()) {
+                int n = Math.min(view.remaining(), scratch.length);
+                view.get(scratch, 0, n);
+                out.write(scratch, 0, n);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the written bytes on heap
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[count];
+        int offset = 0;
+        for (ByteBuffer view : readViews()) {
+            int n = view.remaining();
+            view.get(bytes, offset, n);
+            offset += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * Discards all written bytes, keeping only the first slab
+     */
+    public void reset() {
+        checkOpen();
+        for (int i = 1; i < slabs.size(); i++) {
+            pool.release(slabs.get(i));
+        }
+        current = slabs.get(0);
+        current.clear();
+        slabs.clear();
+        slabs.add(current);
+        count = 0;
+    }
+
+    /**
+     * @return the number of written bytes
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the maximum number of bytes
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Returns all slabs to the pool, closing an already closed stream has no effect
+     */
+    @Override
+    public void close() {
+        if (current == CLOSED) {
+            return;
+        }
+        for (ByteBuffer slab : slabs) {
+            pool.release(slab);
+        }
+        slabs.clear();
+        current = CLOSED;
+        count = 0;
+    }
+
+    @Override
+    public String toString() {
+        return format("DirectBoundedOutputStream.of(%s, %s slabs, %s limit)", count, slabs.size(), limit);
+    }
+
+    private int checkedSize(int length) {
+        int newSize = count + length;
+        if (newSize > limit || newSize < 0) {
+            throw new IllegalArgumentException(format("Reached the buffer limit (%s > %s)", newSize, limit));
+        }
+        return newSize;
+    }
+
+    private void checkOpen() {
+        if (current == CLOSED) {
+            throw new IllegalStateException("Stream closed");
+        }
+    }
+
+    private void nextSlab() {
+        checkOpen();
+        current = pool.acquire();
+        slabs.add(current);
+    }
+
+    /**
+     * A thread-safe pool of equally sized direct buffers.
+     * <p>
+     * Retains at most {@code maxRetainedSlabs} released slabs, the slabs released above it are left
+     * to the garbage collector.
+     * </p>
+     */
+    public static final class SlabPool {
+
+        private static final SlabPool SHARED = new SlabPool(1 << 16, 256);
+
+        private final int slabSize;
+        private final int maxRetainedSlabs;
+        private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger retained = new AtomicInteger();
+        private final AtomicLong allocated = new AtomicLong();
+
+        /**
+         * @param slabSize         the size of a slab in bytes
+         * @param maxRetainedSlabs the maximum number of free slabs kept
+         */
+        public SlabPool(int slabSize, int maxRetainedSlabs) {
+            checkArgument(slabSize > 0, format("Invalid slab size: %s > 0", slabSize));
+            checkArgument(maxRetainedSlabs >= 0, format("Invalid max retained slabs: %s >= 0", maxRetainedSlabs));
+            this.slabSize = slabSize;
+            this.maxRetainedSlabs = maxRetainedSlabs;
+        }
+
+        /**
+         * @return the pool of 64 KB slabs retaining up to 16 MB, shared by default
+         */
+        public static SlabPool shared() {
+            return SHARED;
+        }
+
+        /**
+         * @return the size of a slab in bytes
+         */
+        public int slabSize() {
+            return slabSize;
+        }
+
+        /**
+         * @return the number of free slabs kept
+         */
+        public int retainedSlabs() {
+            return retained.get();
+        }
+
+        /**
+         * @return the number of slabs allocated by this pool
+         */
+        public long allocatedSlabs() {
+            return allocated.get();
+        }
+
+        @Override
+        public String toString() {
+            return format("SlabPool.of(%s bytes, %s retained, %s allocated)", slabSize, retainedSlabs(), allocatedSlabs());
+        }
+
+        ByteBuffer acquire() {
+            ByteBuffer slab = free.poll();
+            if (slab != null) {
+                retained.decrementAndGet();
+                return slab;
+            }
+            allocated.incrementAndGet();
+            return ByteBuffer.allocateDirect(slabSize);
+        }
+
+        void release(ByteBuffer slab) {
+            slab.clear();
+            for (int current; (current = retained.get()) < maxRetainedSlabs; ) {
+                if (retained.compareAndSet(current, current + 1)) {
+                    free.offer(slab);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.bluecatcode.common.io;
+
+import com.bluecatcode.common.functions.Consumer;
+import com.google.common.annotations.Beta;
+import com.google.common.io.CharSource;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.propagateIfPossible;
+import static java.lang.String.format;
+
+/**
+ * Consumes the lines of all files in a directory tree matching a glob, processing several files at once.
+ * <p>
+ * The matching files are scheduled on a bounded pool of workers largest first, so that a large file
+ * started last doesn't leave the other workers idle. A file is read by a single worker, its lines are
+ * passed to the consumer in order, the lines of different files are interleaved.
+ * The first failure stops the remaining files and is rethrown on the calling thread.
+ * </p>
+ * <p>
+ * The glob is matched against the path relative to the directory, with {@code /} as the separator:
+ * {@code *} matches within a directory, {@code **} across directories, {@code ?} one character,
+ * {@code {a,b}} either alternative and {@code [abc]} one of the characters, e.g. {@code **}{@code /*.log}.
+ * </p>
+ * Usage:
+ * <pre>{@code
+ * DirectoryLineProcessor.Stats stats = new DirectoryLineProcessor(8)
+ *         .run(logs, "**.log.*", UTF_8, line -> index(line), (file, lines) -> archive(file));
+ * }</pre>
+ *
+ * @see Files#consumeLines(File, Charset, Consumer)
+ */
+@Beta
+public class DirectoryLineProcessor {
+
+    /**
+     * Notified on the worker thread when all lines of a file are consumed
+     */
+    public interface Listener {
+
+        /**
+         * @param file  the completed file
+         * @param lines the number of lines consumed from the file
+         */
+        void completed(File file, long lines);
+    }
+
+    private final int workers;
+
+    /**
+     * @param workers the number of files processed at once
+     */
+    public DirectoryLineProcessor(int workers) {
+        checkArgument(workers > 0, format("Invalid workers: %s > 0", workers));
+        this.workers = workers;
+    }
+
+    /**
+     * Consumes the lines of the matching files, returning when all files are consumed
+     *
+     * @param directory the root of the tree
+     * @param glob      the glob the relative paths must match
+     * @param charset   the charset of the files
+     * @param consumer  the thread-safe line consumer
+     * @param listener  the thread-safe file completion listener
+     * @return the aggregated statistics
+     * @throws IllegalArgumentException if the directory or a file can't be read
+     * @throws IllegalStateException    if the consumer or listener fails or the calling thread is interrupted
+     */
+    public Stats run(File directory, String glob, final Charset charset,
+                     final Consumer<String> consumer, final Listener listener) {
+        checkArgument(directory != null, "Expected non-null directory");
+        checkArgument(directory.isDirectory(), "File isn't a directory: '%s'", directory);
+        checkArgument(glob != null, "Expected non-null glob");
+        checkArgument(charset != null, "Expected non-null charset");
+        checkArgument(consumer != null, "Expected non-null consumer");
+        checkArgument(listener != null, "Expected non-null listener");
+
+        long started = System.nanoTime();
+        List<SizedFile> files = new ArrayList<>();
+        try {
+            walk(directory, "", globToPattern(glob), files, new HashSet<String>());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        // largest first, so that the small files fill the gaps at the end
+        Collections.sort(files, new Comparator<SizedFile>() {
+            @Override
+            public int compare(SizedFile left, SizedFile right) {
+                return left.length < right.length ? 1 : (left.length > right.length ? -1 : 0);
+            }
+        });
+
+        final AtomicBoolean failed = new AtomicBoolean();
+        final AtomicLong lines = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(workers,
+                new ThreadFactoryBuilder().setNameFormat("directory-lines-%d").setDaemon(true).build());
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (final SizedFile file : files) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        if (failed.get()) {
+                            return null;
+                        }
+                        long fileLines = consume(file.file, charset, consumer, failed);
+                        if (failed.get()) {
+                            // stopped by another file's failure, the file isn't complete
+                            return null;
+                        }
+                        lines.addAndGet(fileLines);
+                        bytes.addAndGet(file.length);
+                        try {
+                            listener.completed(file.file, fileLines);
+                        } catch (Exception e) {
+                            failed.set(true);
+                            throw new IllegalStateException(e);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            failed.set(true);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IllegalArgumentException(cause);
+            }
+            propagateIfPossible(cause);
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            failed.set(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Stats(files.size(), lines.get(), bytes.get(), System.nanoTime() - started);
+    }
+
+    @Override
+    public String toString() {
+        return format("DirectoryLineProcessor.of(%s workers)", workers);
+    }
+
+    private static long consume(File file, Charset charset, Consumer<String> consumer, AtomicBoolean failed)
+            throws IOException {
+        long lines = 0;
+        CharSource source = com.google.common.io.Files.asCharSource(file, charset);
+        try (BufferedReader reader = source.openBufferedStream()) {
+            for (String line; !failed.get() && (line = reader.readLine()) != null; ) {
+                try {
+                    consumer.accept(line);
+                } catch (Exception e) {
+                    failed.set(true);
+                    throw new IllegalStateException(e);
+                }
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Collects the matching normal files, following each directory once (symbolic link cycles)
+     */
+    private static void walk(File directory, String relative, Pattern glob,
+                             List<SizedFile> files, Set<String> visited) throws IOException {
+        if (!visited.add(directory.getCanonicalPath())) {
+            return;
+        }
+        File[] children = directory.listFiles();
+        if (children == null) {
+            throw new IOException(format("Directory can't be read: '%s'", directory));
+        }
+        for (File child : children) {
+            String path = relative + child.getName();
+            if (child.isDirectory()) {
+                walk(child, path + "/", glob, files, visited);
+            } else if (glob.matcher(path).matches() && child.isFile()) {
+                files.add(new SizedFile(child, child.length()));
+            }
+        }
+    }
+
+    /**
+     * Translates the glob to a regular expression
+     */
+    static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() * 2);
+        boolean inGroup = false;
+        boolean inClass = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                } else if (c == '\\' || c == '[') {
+                    regex.append('\\');
+                }
+                regex.append(c);
+                continue;
+            }
+            switch (c) {
+                case '*':
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        i++;
+                        if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+                            // **/ matches zero or more directories
+                            i++;
+                            regex.append("(?:.*/)?");
+                        } else {
+                            regex.append(".*");
+                        }
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '{':
+                    checkArgument(!inGroup, "Nested groups aren't supported: '%s'", glob);
+                    inGroup = true;
+                    regex.append("(?:");
+                    break;
+                case '}':
+                    checkArgument(inGroup, "Unmatched '}': '%s'", glob);
+                    inGroup = false;
+                    regex.append(')');
+                    break;
+                case ',':
+                    regex.append(inGroup ? "|" : ",");
+                    break;
+                case '[':
+                    inClass = true;
+                    regex.append('[');
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+                        i++;
+                        regex.append('^');
+                    }
+                    break;
+                default:
+                    if ("\\.^$+|()]".indexOf(c) >= 0) {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+            }
+        }
+        checkArgument(!inGroup && !inClass, "Unclosed group or class: '%s'", glob);
+        return Pattern.compile(regex.toString());
+    }
+
+    private static final class SizedFile {
+
+        private final File file;
+        private final long length;
+
+        SizedFile(File file, long length) {
+            this.file = file;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The aggregated statistics of a run
+     */
+    public static final class Stats {
+
+        private final long files;
+        private final long lines;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        Stats(long files, long lines, long bytes, long elapsedNanos) {
+            this.files = files;
+            this.lines = lines;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the number of matching files
+         */
+        public long files() {
+            return files;
+        }
+
+        /**
+         * @return the number of lines consumed
+         */
+        public long lines() {
+            return lines;
+        }
+
+        /**
+         * @return the number of bytes of the consumed files
+         */
+        public long bytes() {
+            return bytes;
+        }
+
+        /**
+         * @param unit the time unit
+         * @return the wall time of the run, including the walk
+         */
+        public long elapsed(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return the number of bytes per second
+         */
+        public double bytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return format("Stats.of(%s files, %s lines, %s bytes, %s ms, %.0f bytes/s)",
+                    files, lines, bytes, elapsed(TimeUnit.MILLISECONDS), bytesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.WillCloseWhenClosed;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Reads lines of UTF-8, US-ASCII or ISO-8859-1 encoded bytes, splitting them like
+ * {@link BufferedReader#readLine()} does, with a fast path for ASCII.
+ * <p>
+ * The lines are split on the bytes, which is safe because the line terminators never occur inside
+ * a multi-byte character of the supported charsets. The bytes are widened while looking for the terminator,
+ * so an ASCII (or ISO-8859-1) line is decoded in the same pass. The other lines are decoded again,
+ * skipping their ASCII runs eight bytes at a time, decoding well-formed UTF-8 inline and only the malformed
+ * (or, for US-ASCII, non-ASCII) segments with the {@link CharsetDecoder}.
+ * Malformed and unmappable input is replaced, like {@link java.io.InputStreamReader} does.
+ * </p>
+ * <p>
+ * Kept for {@code LineReadingBenchmark} only, it isn't measurably faster than the charset decoder
+ * on current JVMs, so {@link Files#consumeLines(java.io.File, Charset, com.bluecatcode.common.functions.Consumer)}
+ * doesn't use it.
+ * </p>
+ * <b>Not thread-safe</b>.
+ */
+final class FastLineReader implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final boolean latin1;
+    private final CharsetDecoder decoder;
+    private final boolean utf8;
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean skipLineFeed;
+    private char[] chars = new char[256];
+    private ByteBuffer bytesView;
+    private CharBuffer charsView;
+
+    FastLineReader(@WillCloseWhenClosed InputStream in, Charset charset) {
+        this(in, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    FastLineReader(@WillCloseWhenClosed InputStream in, Charset charset, int bufferSize) {
+        checkArgument(in != null, "Expected non-null input stream");
+        checkArgument(supports(charset), "Unsupported charset: %s", charset);
+        checkArgument(bufferSize > 0, format("Invalid buffer size: %s > 0", bufferSize));
+        this.in = in;
+        this.latin1 = Charsets.ISO_8859_1.equals(charset);
+        this.utf8 = Charsets.UTF_8.equals(charset);
+        this.decoder = latin1 ? null : charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * @param charset the charset
+     * @return true if the charset is supported by the reader
+     */
+    static boolean supports(Charset charset) {
+        return Charsets.UTF_8.equals(charset) || Charsets.US_ASCII.equals(charset)
+                || Charsets.ISO_8859_1.equals(charset);
+    }
+
+    /**
+     * @return the next line without the line terminator, or null at the end of the stream
+     * @throws IOException if an I/O error occurs
+     */
+    String readLine() throws IOException {
+        if (skipLineFeed) {
+            if (position == limit && fill() < 0) {
+                return null;
+            }
+            skipLineFeed = false;
+            if (buffer[position] == '\n') {
+                position++;
+            }
+        }
+        int scan = position;
+        int bits = 0;
+        while (true) {
+            ensureChars(limit - position);
+            byte[] source = buffer;
+            char[] target = chars;
+            int start = position;
+            int end = limit;
+            for (; scan < end; scan++) {
+                byte b = source[scan];
+                if (b == '\n' || b == '\r') {
+                    String line = line(start, scan - start, bits);
+                    skipLineFeed = b == '\r';
+                    position = scan + 1;
+                    return line;
+                }
+                target[scan - start] = (char) (b & 0xff);
+                bits |= b;
+            }
+            int shift = fill();
+            if (shift < 0) {
+                if (position == limit) {
+                    return null;
+                }
+                String line = line(position, limit - position, bits);
+                position = limit;
+                return line;
+            }
+            scan -= shift;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Moves the unread bytes to the start of the buffer, growing it if full, and reads more bytes
+     *
+     * @return the number of positions the unread bytes moved by, or -1 at the end of the stream
+     */
+    private int fill() throws IOException {
+        int shift = position;
+        if (shift > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        } else if (limit == buffer.length) {
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+        }
+        int read;
+        do {
+            read = in.read(buffer, limit, buffer.length - limit);
+        } while (read == 0);
+        if (read < 0) {
+            return -1;
+        }
+        limit += read;
+        return shift;
+    }
+
+    private String line(int offset, int length, int bits) {
+        return latin1 || bits >= 0 ? new String(chars, 0, length) : decode(offset, length);
+    }
+
+    private void ensureChars(int length) {
+        // none of the charsets decodes to more characters than bytes
+        if (chars.length < length) {
+            chars = Arrays.copyOf(chars, Math.max(length, chars.length * 2));
+        }
+    }
+
+    private String decode(int offset, int length) {
+        byte[] source = buffer;
+        char[] target = chars;
+        int end = offset + length;
+        int i = asciiPrefix(source, offset, end);
+        int n = i - offset;
+        while (i < end) {
+            int b = source[i];
+            if (b >= 0) {
+                target[n++] = (char) b;
+                i++;
+                continue;
+            }
+            int sequence = utf8 ? utf8Sequence(source, i, end) : 0;
+            if (sequence == 0) {
+                // malformed or not UTF-8, the decoder replaces the segment up to the next ASCII byte,
+                // which always starts a character
+                int segmentEnd = i + 1;
+                while (segmentEnd < end && source[segmentEnd] < 0) {
+                    segmentEnd++;
+                }
+                n = decodeSegment(i, segmentEnd, n);
+                i = segmentEnd;
+                continue;
+            }
+            int codePoint;
+            if (sequence == 2) {
+                codePoint = ((b & 0x1f) << 6) | (source[i + 1] & 0x3f);
+            } else if (sequence == 3) {
+                codePoint = ((b & 0x0f) << 12) | ((source[i + 1] & 0x3f) << 6) | (source[i + 2] & 0x3f);
+            } else {
+                codePoint = ((b & 0x07) << 18) | ((source[i + 1] & 0x3f) << 12)
+                        | ((source[i + 2] & 0x3f) << 6) | (source[i + 3] & 0x3f);
+            }
+            if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                target[n++] = (char) (Character.MIN_HIGH_SURROGATE + ((codePoint - 0x10000) >>> 10));
+                target[n++] = (char) (Character.MIN_LOW_SURROGATE + (codePoint & 0x3ff));
+            } else {
+                target[n++] = (char) codePoint;
+            }
+            i += sequence;
+        }
+        return new String(target, 0, n);
+    }
+
+    /**
+     * @return the index of the first non-ASCII byte, or the end if all bytes are ASCII
+     */
+    static int asciiPrefix(byte[] source, int offset, int end) {
+        int i = offset;
+        // eight bytes at a time, an ASCII byte has the sign bit clear
+        while (i + 8 <= end && (source[i] | source[i + 1] | source[i + 2] | source[i + 3]
+                | source[i + 4] | source[i + 5] | source[i + 6] | source[i + 7]) >= 0) {
+            i += 8;
+        }
+        while (i < end && source[i] >= 0) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the length of the well-formed UTF-8 sequence starting at the index, or zero if malformed
+     */
+    private static int utf8Sequence(byte[] source, int index, int end) {
+        int b = source[index] & 0xff;
+        if (b >= 0xc2 && b <= 0xdf) {
+            return index + 1 < end && isContinuation(source[index + 1], 0x80, 0xbf) ? 2 : 0;
+        }
+        if (b >= 0xe0 && b <= 0xef) {
+            int min = b == 0xe0 ? 0xa0 : 0x80;
+            int max = b == 0xed ? 0x9f : 0xbf;
+            return index + 2 < end && isContinuation(source[index + 1], min, max)
+                    && isContinuation(source[index + 2], 0x80, 0xbf) ? 3 : 0;
+        }
+        if (b >= 0xf0 && b <= 0xf4) {
+            int min = b == 0xf0 ? 0x90 : 0x80;
+            int max = b == 0xf4 ? 0x8f : 0xbf;
+            return index + 3 < end && isContinuation(source[index + 1], min, max)
+                    && isContinuation(source[index + 2], 0x80, 0xbf)
+                    && isContinuation(source[index + 3], 0x80, 0xbf) ? 4 : 0;
+        }
+        return 0;
+    }
+
+    private static boolean isContinuation(byte b, int min, int max) {
+        int value = b & 0xff;
+        return value >= min && value <= max;
+    }
+
+    private int decodeSegment(int start, int end, int charPosition) {
+        if (bytesView == null || bytesView.array() != buffer) {
+            bytesView = ByteBuffer.wrap(buffer);
+        }
+        if (charsView == null || charsView.array() != chars) {
+            charsView = CharBuffer.wrap(chars);
+        }
+        bytesView.limit(end);
+        bytesView.position(start);
+        charsView.clear();
+        charsView.position(charPosition);
+        decoder.reset();
+        decoder.decode(bytesView, charsView, true);
+        decoder.flush(charsView);
+        return charsView.position();
+    }
+}
@@ -0,0 +1,163 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A reusable, flyweight view of a field of a {@link DelimitedRecord}.
+ * <p>
+ * The view doesn't copy the field, except for quoted fields with escaped quotes, which are unescaped once
+ * into a buffer shared by the record. The numbers are parsed straight from the view,
+ * the only allocating methods are {@link #toString()} and {@link #subSequence(int, int)}.
+ * </p>
+ * <b>Note:</b> the view is only valid for the duration of the callback the record is passed to,
+ * it is reused for the next record. Call {@link #toString()} to keep a field.
+ */
+@Beta
+public final class FieldView implements CharSequence {
+
+    private CharSequence line;
+    private char[] chars;
+    private int start;
+    private int length;
+    private int offset;
+    private boolean quoted;
+
+    FieldView() {
+    }
+
+    void set(CharSequence line, int start, int length, boolean quoted) {
+        this.line = line;
+        this.chars = null;
+        this.start = start;
+        this.length = length;
+        this.offset = start;
+        this.quoted = quoted;
+    }
+
+    void setUnescaped(char[] chars, int start, int length, int offset) {
+        this.line = null;
+        this.chars = chars;
+        this.start = start;
+        this.length = length;
+        this.offset = offset;
+        this.quoted = true;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return chars != null ? chars[start + index] : line.charAt(start + index);
+    }
+
+    /**
+     * @return a new string with the characters in the range
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    /**
+     * @return the offset of the first character of the field in the line, after the opening quote
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * @return true if the field is quoted
+     */
+    public boolean isQuoted() {
+        return quoted;
+    }
+
+    /**
+     * @param other the characters to compare with
+     * @return true if the field has the same characters
+     */
+    public boolean contentEquals(CharSequence other) {
+        checkArgument(other != null, "Expected non-null other");
+        if (other.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the field as a signed decimal, like {@link Integer#parseInt(String)} without creating a string
+     *
+     * @return the parsed number
+     * @throws NumberFormatException if the field isn't a valid int
+     */
+    public int parseInt() {
+        long value = parseLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw invalidNumber();
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses the field as a signed decimal, like {@link Long#parseLong(String)} without creating a string
+     *
+     * @return the parsed number
+     * @throws NumberFormatException if the field isn't a valid long
+     */
+    public long parseLong() {
+        if (length == 0) {
+            throw invalidNumber();
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (length == 1) {
+                throw invalidNumber();
+            }
+        }
+        // accumulate negatively, the negative range is one larger
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw invalidNumber();
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw invalidNumber();
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return chars != null ? new String(chars, start, length) : line.subSequence(start, start + length).toString();
+    }
+
+    private NumberFormatException invalidNumber() {
+        return new NumberFormatException("For input string: \"" + toString() + "\"");
+    }
+}
@@ -0,0 +1,240 @@
+package com.bluecatcode.common.io;
+
+import com.bluecatcode.common.functions.Consumer;
+import com.google.common.annotations.Beta;
+import com.google.common.hash.HashCode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.bluecatcode.common.concurrent.Sleep.sleepFor;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Incrementally consumes the lines appended to a growing file, e.g. a log file,
+ * remembering the last consumed offset in a small checkpoint file.
+ * <p>
+ * Each {@link #poll(Consumer)} reads only the complete lines appended since the last one,
+ * so its cost is proportional to the new data. A trailing line without a line feed is left
+ * for the next poll. Lines end with {@code \n} or {@code \r\n}.
+ * </p>
+ * <p>
+ * Truncation is detected when the file is shorter than the checkpoint offset, rotation when the first
+ * {@value #HEAD_SIZE} bytes (the head) no longer match the checkpoint. Both restart from the beginning.
+ * The file identity (inode) isn't available on this platform level, so a rotated file with
+ * the same head and at least the consumed length isn't detected.
+ * </p>
+ * <b>Note:</b> delivery is at-least-once, the checkpoint is saved after the lines are consumed
+ * and, on a best-effort basis, after a consumer failure, but a crash in between replays the lines consumed since the last save.
+ */
+@Beta
+public class FileFollower {
+
+    public static final int HEAD_SIZE = FileHead.SIZE;
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final String OFFSET = "offset";
+    private static final String HEAD_LENGTH = "head.length";
+    private static final String HEAD_HASH_KEY = "head.hash";
+
+    private static final Logger log = Logger.getLogger(FileFollower.class.getName());
+
+    private final File file;
+    private final Charset charset;
+    private final File checkpoint;
+
+    private long offset;
+    private FileHead head = FileHead.EMPTY;
+
+    /**
+     * @param file       the file to follow
+     * @param charset    the charset of the file, must encode line terminators as single bytes, e.g. UTF-8
+     * @param checkpoint the checkpoint file, loaded if it exists
+     * @throws IllegalArgumentException if the checkpoint can't be read
+     */
+    public FileFollower(File file, Charset charset, File checkpoint) {
+        checkArgument(file != null, "Expected non-null file");
+        checkArgument(charset != null, "Expected non-null charset");
+        checkArgument(checkpoint != null, "Expected non-null checkpoint");
+        checkArgument("\r\n".getBytes(charset).length == 2,
+                "Unsupported charset, line terminators must be single bytes: %s", charset);
+        this.file = file;
+        this.charset = charset;
+        this.checkpoint = checkpoint.getAbsoluteFile();
+        if (this.checkpoint.exists()) {
+            Properties properties = Files.getFileAsProperties(this.checkpoint);
+            try {
+                this.offset = Long.parseLong(properties.getProperty(OFFSET, "0"));
+                int headLength = Integer.parseInt(properties.getProperty(HEAD_LENGTH, "0"));
+                if (headLength > 0) {
+                    String headHash = properties.getProperty(HEAD_HASH_KEY, "");
+                    this.head = new FileHead(headLength, HashCode.fromString(headHash));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(format("Malformed checkpoint '%s'", checkpoint), e);
+            }
+        }
+    }
+
+    /**
+     * Consumes the complete lines appended since the last poll and saves the checkpoint
+     *
+     * @param consumer the line consumer
+     * @return the number of lines consumed, zero if the file doesn't exist
+     * @throws IllegalArgumentException if the file can't be read or the checkpoint can't be saved
+     * @throws IllegalStateException    if the consumer fails, the checkpoint is saved up to the last consumed line
+     */
+    public long poll(Consumer<String> consumer) {
+        checkArgument(consumer != null, "Expected non-null consumer");
+        if (!file.isFile()) {
+            return 0;
+        }
+
+        long lines = 0;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            long length = channel.size();
+            boolean changed = checkHead(channel, length);
+            if (length <= offset) {
+                if (changed) {
+                    save();
+                }
+                return 0;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            long position = offset;
+            try {
+                while (position < length) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), length - position));
+                    int read = channel.read(buffer, position);
+                    if (read <= 0) {
+                        break;
+                    }
+                    position += read;
+                    byte[] bytes = buffer.array();
+                    for (int i = 0; i < read; i++) {
+                        byte b = bytes[i];
+                        if (b != '\n') {
+                            if (lineLength == line.length) {
+                                line = Arrays.copyOf(line, line.length * 2);
+                            }
+                            line[lineLength++] = b;
+                            continue;
+                        }
+                        int end = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                        try {
+                            consumer.accept(new String(line, 0, end, charset));
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                        offset += lineLength + 1;
+                        lineLength = 0;
+                        lines++;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // keeps the lines consumed before the failure, without replacing the failure
+                saveQuietly();
+                throw e;
+            }
+            save();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return lines;
+    }
+
+    /**
+     * Polls the file at the interval until the current thread is interrupted
+     *
+     * @param consumer the line consumer
+     * @param interval the time between polls
+     * @param unit     the interval unit
+     * @return the number of lines consumed
+     * @throws IllegalArgumentException if the file can't be read or the checkpoint can't be saved
+     * @throws IllegalStateException    if the consumer fails
+     */
+    public long follow(Consumer<String> consumer, long interval, TimeUnit unit) {
+        checkArgument(interval > 0, format("Invalid interval: %s > 0", interval));
+        checkArgument(unit != null, "Expected non-null unit");
+        long lines = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            lines += poll(consumer);
+            sleepFor(interval, unit);
+        }
+        return lines;
+    }
+
+    /**
+     * @return the offset of the first byte not consumed yet
+     */
+    public long offset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return format("FileFollower.of(%s, %s, %s)", file, offset, checkpoint);
+    }
+
+    /**
+     * Restarts from the beginning if the file was truncated or rotated and extends the head
+     *
+     * @return true if the checkpoint changed
+     */
+    private boolean checkHead(FileChannel channel, long length) throws IOException {
+        boolean changed = false;
+        if (length < offset || !head.matches(channel, length)) {
+            offset = 0;
+            head = FileHead.EMPTY;
+            changed = true;
+        }
+        FileHead extended = head.extend(channel, length);
+        if (extended != head) {
+            head = extended;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, format("Can't save the checkpoint '%s'", checkpoint), e);
+        }
+    }
+
+    private void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(OFFSET, String.valueOf(offset));
+        properties.setProperty(HEAD_LENGTH, String.valueOf(head.length()));
+        properties.setProperty(HEAD_HASH_KEY, head.length() > 0 ? head.hash().toString() : "");
+        File temporary = File.createTempFile(checkpoint.getName(), ".tmp", checkpoint.getParentFile());
+        try {
+            try (OutputStream output = new FileOutputStream(temporary)) {
+                properties.store(output, "FileFollower checkpoint of " + file);
+            }
+            com.google.common.io.Files.move(temporary, checkpoint);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temporary.delete();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * The fingerprint of the first {@value #SIZE} bytes (the head) of a growing file,
+ * to detect that the file was truncated or rotated.
+ * <p>
+ * A head shorter than {@value #SIZE} bytes is extended as the file grows.
+ * </p>
+ *
+ * @see FileFollower
+ * @see LineIndex
+ */
+final class FileHead {
+
+    static final int SIZE = 256;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    static final int HASH_BYTES = HASH.bits() / Byte.SIZE;
+    static final FileHead EMPTY = new FileHead(0, HashCode.fromBytes(new byte[HASH_BYTES]));
+
+    private final int length;
+    private final HashCode hash;
+
+    /**
+     * @param length the number of bytes of the head
+     * @param hash   the hash of the head, ignored if the head is empty
+     */
+    FileHead(int length, HashCode hash) {
+        checkArgument(length >= 0 && length <= SIZE, format("Invalid head length: 0 <= %s <= %s", length, SIZE));
+        checkArgument(hash != null && hash.bits() == HASH.bits(), "Expected a %s bit hash", HASH.bits());
+        this.length = length;
+        this.hash = hash;
+    }
+
+    /**
+     * @param channel    the file
+     * @param fileLength the length of the file
+     * @return false if the file is shorter than the head or starts with other bytes, i.e. it was truncated or rotated
+     * @throws IOException if the file can't be read
+     */
+    boolean matches(FileChannel channel, long fileLength) throws IOException {
+        return fileLength >= length && (length == 0 || hash.equals(hash(channel, length)));
+    }
+
+    /**
+     * @param channel    the file
+     * @param fileLength the length of the file
+     * @return the head extended to the first {@value #SIZE} bytes of the file, or this head if it can't be extended
+     * @throws IOException if the file can't be read
+     */
+    FileHead extend(FileChannel channel, long fileLength) throws IOException {
+        if (length < SIZE && fileLength > length) {
+            int extended = (int) Math.min(SIZE, fileLength);
+            return new FileHead(extended, hash(channel, extended));
+        }
+        return this;
+    }
+
+    int length() {
+        return length;
+    }
+
+    HashCode hash() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return format("FileHead.of(%s, %s)", length, hash);
+    }
+
+    private static HashCode hash(FileChannel channel, int length) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(length);
+        while (head.hasRemaining()) {
+            if (channel.read(head, head.position()) < 0) {
+                break;
+            }
+        }
+        return HASH.hashBytes(head.array(), 0, head.position());
+    }
+}
@@ -0,0 +1,139 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * The result of a bulk file validation, listing every invalid file instead of failing on the first one.
+ *
+ * @see Files#validateFiles(Collection, int)
+ */
+@Beta
+public final class FileValidationReport {
+
+    private static final int MAX_REPORTED_FAILURES = 10;
+
+    /**
+     * Why a file is invalid
+     */
+    public enum Problem {
+        MISSING("File doesn't exist"),
+        NOT_A_FILE("File isn't normal file"),
+        NOT_READABLE("File can't be read");
+
+        private final String message;
+
+        Problem(String message) {
+            this.message = message;
+        }
+
+        /**
+         * @return the message, as used by {@link Files#checkFileExists(File)}
+         */
+        public String message() {
+            return message;
+        }
+    }
+
+    private final int checked;
+    private final ImmutableList<Failure> failures;
+    private final long elapsedNanos;
+
+    FileValidationReport(int checked, List<Failure> failures, long elapsedNanos) {
+        this.checked = checked;
+        this.failures = ImmutableList.copyOf(failures);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the number of files checked
+     */
+    public int checked() {
+        return checked;
+    }
+
+    /**
+     * @return the invalid files, in the input order
+     */
+    public ImmutableList<Failure> failures() {
+        return failures;
+    }
+
+    /**
+     * @return true if all files are valid
+     */
+    public boolean isValid() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @param unit the time unit
+     * @return the wall time of the validation
+     */
+    public long elapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @throws IllegalArgumentException listing the first invalid files, if any file is invalid
+     */
+    public void checkValid() {
+        if (failures.isEmpty()) {
+            return;
+        }
+        StringBuilder message = new StringBuilder(format("Invalid files: %s of %s", failures.size(), checked));
+        for (Failure failure : failures.subList(0, Math.min(failures.size(), MAX_REPORTED_FAILURES))) {
+            message.append("; ").append(failure);
+        }
+        if (failures.size() > MAX_REPORTED_FAILURES) {
+            message.append("; ...");
+        }
+        throw new IllegalArgumentException(message.toString());
+    }
+
+    @Override
+    public String toString() {
+        return format("FileValidationReport.of(%s checked, %s failures, %s ms)",
+                checked, failures.size(), elapsed(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * An invalid file
+     */
+    public static final class Failure {
+
+        private final File file;
+        private final Problem problem;
+
+        Failure(File file, Problem problem) {
+            this.file = file;
+            this.problem = problem;
+        }
+
+        /**
+         * @return the invalid file
+         */
+        public File file() {
+            return file;
+        }
+
+        /**
+         * @return why the file is invalid
+         */
+        public Problem problem() {
+            return problem;
+        }
+
+        @Override
+        public String toString() {
+            return format("%s: '%s'", problem.message(), file);
+        }
+    }
+}
@@ -1,18 +1,40 @@
 package com.bluecatcode.common.io;
 
+import com.bluecatcode.common.functions.CheckedConsumer;
 import com.bluecatcode.common.functions.Consumer;
 import com.google.common.annotations.Beta;
 import com.google.common.base.Charsets;
 import com.google.common.io.CharSource;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import javax.annotation.WillNotClose;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.propagateIfPossible;
 import static com.google.common.base.Strings.nullToEmpty;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static java.lang.String.format;
 
 /**
@@ -24,6 +46,14 @@ public class Files {
 
     private static final Logger log = Logger.getLogger(Files.class.getName());
 
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 24;
+    private static final int MAX_CHUNK_SIZE = 1 << 30;
+    private static final int MAPPED_WINDOW = 1 << 28;
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final long TRANSFER_SIZE = 1 << 24;
+    private static final int DEFAULT_VALIDATION_PARALLELISM = 16;
+    private static final int PARALLEL_VALIDATION_THRESHOLD = 1024;
+
     private Files() {
         throw new UnsupportedOperationException();
     }
@@ -42,6 +72,7 @@ public class Files {
      * Loads properties from file
      * @param file the properties file
      * @return the loaded properties
+     * @see PropertiesCache
      *
      * @since 1.0.4
      */
@@ -79,11 +110,12 @@ public class Files {
 
         //noinspection ConstantConditions
         File parentFile = file.getParentFile();
-        String fileMessage = format("%s; exists: %s, can read: %s", file, file.exists(), file.canRead());
-        String parentFileMessage = (parentFile == null) ? "" :
-                format(", dir exists: %s, dir can read: %s", parentFile.exists(), parentFile.canRead());
-
-        log.log(Level.FINE, fileMessage + parentFileMessage);
+        if (log.isLoggable(Level.FINE)) {
+            String fileMessage = format("%s; exists: %s, can read: %s", file, file.exists(), file.canRead());
+            String parentFileMessage = (parentFile == null) ? "" :
+                    format(", dir exists: %s, dir can read: %s", parentFile.exists(), parentFile.canRead());
+            log.log(Level.FINE, fileMessage + parentFileMessage);
+        }
 
         checkArgument(file.exists(), "File doesn't exist: '%s'", file);
         checkArgument(file.isFile(), "File isn't normal file: '%s'", file);
@@ -94,10 +126,103 @@ public class Files {
         checkArgument(parentFile.canRead(), "File parent can't be read: '%s'", parentFile);
     }
 
+    /**
+     * Validates the files in parallel, see {@link #validateFiles(Collection, int)}
+     *
+     * @param files the files to validate
+     * @return the report of all invalid files
+     *
+     * @since 1.1.1
+     */
+    public static FileValidationReport validateFiles(Collection<File> files) {
+        return validateFiles(files, DEFAULT_VALIDATION_PARALLELISM);
+    }
+
+    /**
+     * Checks that each file is an existing, readable, normal file and reports every invalid file.
+     * <p>
+     * Unlike {@link #checkFilesExist(File...)}, which queries the file system about eight times per file
+     * and throws on the first invalid file, a valid file costs two queries ({@link File#isFile()} and
+     * {@link File#canRead()}), the cause is only diagnosed for invalid files. Large inputs are split into
+     * slices validated concurrently, which hides the latency of network file systems.
+     * </p>
+     *
+     * @param files       the files to validate
+     * @param parallelism the number of threads, one to validate on the calling thread
+     * @return the report of all invalid files
+     * @throws IllegalStateException if the calling thread is interrupted
+     *
+     * @since 1.1.1
+     */
+    public static FileValidationReport validateFiles(Collection<File> files, int parallelism) {
+        checkArgument(files != null, "Expected non-null files");
+        checkArgument(parallelism > 0, format("Invalid parallelism: %s > 0", parallelism));
+        long started = System.nanoTime();
+        List<File> list = new ArrayList<>(files);
+        for (File file : list) {
+            checkArgument(file != null, "Expected non-null file");
+        }
+        if (parallelism == 1 || list.size() < PARALLEL_VALIDATION_THRESHOLD) {
+            return new FileValidationReport(list.size(), validateSlice(list), System.nanoTime() - started);
+        }
+
+        // more slices than threads, so that a slow slice doesn't hold up the others
+        int sliceSize = (list.size() + 4 * parallelism - 1) / (4 * parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("validate-files-%d").setDaemon(true).build());
+        try {
+            List<Future<List<FileValidationReport.Failure>>> futures = new ArrayList<>();
+            for (int start = 0; start < list.size(); start += sliceSize) {
+                final List<File> slice = list.subList(start, Math.min(list.size(), start + sliceSize));
+                futures.add(executor.submit(() -> validateSlice(slice)));
+            }
+            List<FileValidationReport.Failure> failures = new ArrayList<>();
+            for (Future<List<FileValidationReport.Failure>> future : futures) {
+                failures.addAll(future.get());
+            }
+            return new FileValidationReport(list.size(), failures, System.nanoTime() - started);
+        } catch (ExecutionException e) {
+            propagateIfPossible(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<FileValidationReport.Failure> validateSlice(List<File> files) {
+        List<FileValidationReport.Failure> failures = new ArrayList<>();
+        for (File file : files) {
+            FileValidationReport.Problem problem;
+            if (file.isFile()) {
+                if (file.canRead()) {
+                    continue;
+                }
+                problem = FileValidationReport.Problem.NOT_READABLE;
+            } else {
+                problem = file.exists() ? FileValidationReport.Problem.NOT_A_FILE : FileValidationReport.Problem.MISSING;
+            }
+            failures.add(new FileValidationReport.Failure(file, problem));
+        }
+        return failures;
+    }
+
     public static void consumeLines(File file, Consumer<String> consumer) {
         consumeLines(file, Charsets.UTF_8, consumer);
     }
 
+    /**
+     * Passes each line of the file to the consumer, lines are split like {@link BufferedReader#readLine()} does.
+     *
+     * @param file     the file to read
+     * @param charset  the charset of the file
+     * @param consumer the line consumer
+     * @throws IllegalArgumentException if the file can't be read
+     * @throws IllegalStateException    if the consumer fails
+     * @see LineIndex
+     */
     public static void consumeLines(File file, Charset charset, Consumer<String> consumer) {
         try {
             CharSource charSource = com.google.common.io.Files.asCharSource(file, charset);
@@ -115,6 +240,221 @@ public class Files {
         }
     }
 
+    /**
+     * Memory-maps the file and consumes its lines in parallel, see
+     * {@link #consumeLinesInParallel(File, Charset, Consumer, ExecutorService, int)}
+     *
+     * @param file        the file to read
+     * @param charset     the charset of the file, must encode line terminators as single bytes
+     * @param consumer    the thread-safe line consumer
+     * @param parallelism the number of threads
+     * @return the number of lines consumed
+     *
+     * @since 1.1.1
+     */
+    public static long consumeLinesInParallel(File file, Charset charset, Consumer<String> consumer, int parallelism) {
+        checkArgument(parallelism > 0, format("Invalid parallelism: %s > 0", parallelism));
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("consume-lines-%d").setDaemon(true).build());
+        try {
+            return consumeLinesInParallel(file, charset, consumer, executor, DEFAULT_CHUNK_SIZE);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Memory-maps the file, splits it into chunks aligned to line ends and consumes the chunks concurrently.
+     * <p>
+     * Lines are split like {@link BufferedReader#readLine()} does. The lines of a chunk are passed
+     * to the consumer in file order by a single task, the chunks are processed in no particular order.
+     * The first failure stops the remaining chunks.
+     * </p>
+     *
+     * @param file      the file to read
+     * @param charset   the charset of the file, must encode line terminators as single bytes, e.g. UTF-8
+     * @param consumer  the thread-safe line consumer
+     * @param executor  the executor to run the chunks on
+     * @param chunkSize the approximate number of bytes per chunk
+     * @return the number of lines consumed
+     * @throws IllegalArgumentException if the file can't be read
+     * @throws IllegalStateException    if the consumer fails
+     *
+     * @since 1.1.1
+     */
+    public static long consumeLinesInParallel(File file, Charset charset, Consumer<String> consumer,
+                                              ExecutorService executor, int chunkSize) {
+        checkArgument(file != null, "Expected non-null file");
+        checkArgument(charset != null, "Expected non-null charset");
+        checkArgument(consumer != null, "Expected non-null consumer");
+        checkArgument(executor != null, "Expected non-null executor");
+        checkArgument(chunkSize > 0 && chunkSize <= MAX_CHUNK_SIZE,
+                format("Invalid chunk size: 0 < %s <= %s", chunkSize, MAX_CHUNK_SIZE));
+        checkArgument("\r\n".getBytes(charset).length == 2,
+                "Unsupported charset, line terminators must be single bytes: %s", charset);
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            AtomicBoolean failed = new AtomicBoolean();
+            List<Future<Long>> futures = new ArrayList<>();
+            for (long start = 0; start < size; start += chunkSize) {
+                futures.add(executor.submit(new LineChunk(channel, size, start, Math.min(size, start + chunkSize),
+                        charset, consumer, failed)));
+            }
+            long lines = 0;
+            try {
+                for (Future<Long> future : futures) {
+                    lines += future.get();
+                }
+            } catch (ExecutionException e) {
+                failed.set(true);
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw new IllegalArgumentException(cause);
+                }
+                propagateIfPossible(cause);
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                failed.set(true);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                // the remaining chunks stop at their next line, the channel must outlive all of them
+                awaitQuietly(futures);
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static void awaitQuietly(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                getUninterruptibly(future);
+            } catch (ExecutionException | CancellationException ignored) {
+                // the first failure is already reported
+            }
+        }
+    }
+
+    /**
+     * Memory-maps the UTF-8 (or ASCII) encoded file and passes each line to the consumer
+     * as a reused {@link LineView}, without allocating per line.
+     * <p>
+     * Lines are split like {@link BufferedReader#readLine()} does. The view is only valid for the duration
+     * of the callback, call {@link LineView#toString()} to keep a line.
+     * </p>
+     *
+     * @param file     the file to read
+     * @param consumer the line view consumer
+     * @return the number of lines consumed
+     * @throws IllegalArgumentException if the file can't be read
+     * @throws IllegalStateException    if the consumer fails or a line is longer than 256 MB
+     *
+     * @since 1.1.1
+     */
+    public static long consumeLineViews(File file, Consumer<LineView> consumer) {
+        return consumeLineViews(file, consumer, MAPPED_WINDOW);
+    }
+
+    static long consumeLineViews(File file, Consumer<LineView> consumer, int windowSize) {
+        checkArgument(file != null, "Expected non-null file");
+        checkArgument(consumer != null, "Expected non-null consumer");
+
+        LineView view = new LineView();
+        long lines = 0;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            long offset = 0;
+            while (offset < size) {
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(size - offset, windowSize));
+                boolean lastWindow = offset + window.limit() == size;
+                int limit = window.limit();
+                int position = 0;
+                while (position < limit) {
+                    int lineEnd = position;
+                    int bits = 0;
+                    byte b = 0;
+                    while (lineEnd < limit && (b = window.get(lineEnd)) != '\n' && b != '\r') {
+                        bits |= b;
+                        lineEnd++;
+                    }
+                    if (lineEnd == limit && !lastWindow) {
+                        // the line continues in the next window
+                        break;
+                    }
+                    int next = lineEnd + 1;
+                    if (b == '\r' && lineEnd < limit) {
+                        if (next < limit && window.get(next) == '\n') {
+                            next++;
+                        } else if (next == limit && !lastWindow) {
+                            // the '\n' of a \r\n pair may start the next window
+                            break;
+                        }
+                    }
+                    view.set(window, position, lineEnd - position, offset + position, bits >= 0);
+                    try {
+                        consumer.accept(view);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    lines++;
+                    position = next;
+                }
+                if (position == 0 && !lastWindow) {
+                    throw new IllegalStateException(format("Line too long to map at %s in '%s'", offset, file));
+                }
+                offset += Math.min(position, limit);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return lines;
+    }
+
+    /**
+     * Reads the lines on the calling thread and consumes them in batches on worker threads,
+     * see {@link LinePipeline}
+     *
+     * @param file     the file to read
+     * @param charset  the charset of the file
+     * @param consumer the thread-safe batch consumer
+     * @param workers  the number of worker threads
+     * @return the pipeline statistics
+     * @throws IllegalArgumentException if the file can't be read
+     * @throws IllegalStateException    if the consumer fails
+     *
+     * @since 1.1.1
+     */
+    public static LinePipeline.Stats consumeLineBatches(File file, Charset charset,
+                                                        Consumer<List<String>> consumer, int workers) {
+        return new LinePipeline(DEFAULT_BATCH_SIZE, 2 * workers, workers).run(file, charset, consumer);
+    }
+
+    /**
+     * Consumes the lines of all files in the tree matching the glob, see {@link DirectoryLineProcessor}
+     *
+     * @param directory the root of the tree
+     * @param glob      the glob the paths relative to the directory must match, e.g. {@code **.log}
+     * @param charset   the charset of the files
+     * @param consumer  the thread-safe line consumer
+     * @param workers   the number of files processed at once
+     * @return the aggregated statistics
+     * @throws IllegalArgumentException if the directory or a file can't be read
+     * @throws IllegalStateException    if the consumer fails
+     *
+     * @since 1.1.1
+     */
+    public static DirectoryLineProcessor.Stats consumeLinesInTree(File directory, String glob, Charset charset,
+                                                                 Consumer<String> consumer, int workers) {
+        return new DirectoryLineProcessor(workers).run(directory, glob, charset, consumer, (file, lines) -> {
+        });
+    }
+
     public static void write(CharSequence from, File to) throws IOException {
         write(from, to, Charsets.UTF_8);
     }
@@ -123,11 +463,275 @@ public class Files {
         com.google.common.io.Files.write(from, to, charset);
     }
 
+    /**
+     * Atomically writes the UTF-8 encoded characters to the file,
+     * see {@link #writeAtomically(CharSequence, File, Charset)}.
+     *
+     * @param from the characters to write
+     * @param to   the destination file
+     * @throws IOException if an I/O error occurs
+     * @since 1.1.1
+     */
+    public static void writeAtomically(CharSequence from, File to) throws IOException {
+        writeAtomically(from, to, Charsets.UTF_8);
+    }
+
+    /**
+     * Atomically writes the characters to the file, see {@link #writeAtomically(ByteBuffer, File)}.
+     * <p>
+     * The characters are encoded in slabs straight into a pooled direct buffer, so a large write needs
+     * neither a full-size byte array nor a copy into a direct buffer by the channel.
+     * Unmappable characters are replaced like {@link String#getBytes(Charset)} does.
+     * </p>
+     *
+     * @param from    the characters to write
+     * @param to      the destination file
+     * @param charset the charset to encode the characters with
+     * @throws IOException if an I/O error occurs
+     * @since 1.1.1
+     */
+    public static void writeAtomically(final CharSequence from, File to, final Charset charset) throws IOException {
+        checkArgument(from != null, "Expected non-null from");
+        checkArgument(charset != null, "Expected non-null charset");
+        writeAtomically(to, channel -> {
+            CharsetEncoder encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer input = CharBuffer.wrap(from);
+            DirectBoundedOutputStream.SlabPool pool = DirectBoundedOutputStream.SlabPool.shared();
+            ByteBuffer slab = pool.acquire();
+            try {
+                boolean flushing = false;
+                while (true) {
+                    CoderResult result = flushing ? encoder.flush(slab) : encoder.encode(input, slab, true);
+                    if (result.isError()) {
+                        result.throwException();
+                    }
+                    if (result.isOverflow()) {
+                        drain(slab, channel);
+                    } else if (!flushing) {
+                        flushing = true;
+                    } else {
+                        drain(slab, channel);
+                        return;
+                    }
+                }
+            } finally {
+                pool.release(slab);
+            }
+        });
+    }
+
+    /**
+     * Atomically writes the remaining bytes of the buffer to the file, the buffer position is not changed.
+     * <p>
+     * The bytes are written to a temporary file in the same directory, forced to the storage device
+     * and the temporary file is renamed to the destination, so readers see either the old or the new content.
+     * The guarantee relies on a rename that atomically replaces an existing file (e.g. POSIX),
+     * where the platform can't rename over an existing file (e.g. Windows) the write fails
+     * and the destination is left unchanged, it is never replaced by a copy.
+     * </p>
+     *
+     * @param from the bytes to write
+     * @param to   the destination file
+     * @throws IOException if an I/O error occurs
+     * @since 1.1.1
+     */
+    public static void writeAtomically(ByteBuffer from, File to) throws IOException {
+        checkArgument(from != null, "Expected non-null from");
+        final ByteBuffer source = from.duplicate();
+        writeAtomically(to, channel -> {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        });
+    }
+
+    /**
+     * Atomically writes the rest of the channel to the file, see {@link #writeAtomically(ByteBuffer, File)}.
+     * The bytes are transferred with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}.
+     *
+     * @param from the blocking channel to read until the end of stream, not closed
+     * @param to   the destination file
+     * @throws IOException if an I/O error occurs
+     * @since 1.1.1
+     */
+    public static void writeAtomically(@WillNotClose final ReadableByteChannel from, File to) throws IOException {
+        checkArgument(from != null, "Expected non-null from");
+        writeAtomically(to, channel -> {
+            long position = 0;
+            for (long transferred; (transferred = channel.transferFrom(from, position, TRANSFER_SIZE)) > 0; ) {
+                position += transferred;
+            }
+        });
+    }
+
+    /**
+     * Atomically copies the file, see {@link #writeAtomically(ByteBuffer, File)}.
+     * The bytes are transferred with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)},
+     * which lets the operating system copy without passing the bytes through the Java heap.
+     *
+     * @param from the source file
+     * @param to   the destination file
+     * @throws IOException if an I/O error occurs
+     * @since 1.1.1
+     */
+    public static void copyAtomically(File from, File to) throws IOException {
+        checkArgument(from != null, "Expected non-null from");
+        try (FileInputStream input = new FileInputStream(from)) {
+            final FileChannel source = input.getChannel();
+            final long size = source.size();
+            writeAtomically(to, channel -> {
+                long position = 0;
+                while (position < size) {
+                    long transferred = channel.transferFrom(source, position, Math.min(size - position, TRANSFER_SIZE));
+                    if (transferred <= 0) {
+                        throw new EOFException(format("Unexpected end of file '%s' at %s of %s", from, position, size));
+                    }
+                    position += transferred;
+                }
+            });
+        }
+    }
+
     public static void append(CharSequence from, File to) throws IOException {
         append(from, to, Charsets.UTF_8);
     }
 
+    /**
+     * Opens the file, appends to it and closes it, for frequent appends use a {@link GroupCommitAppender}
+     */
     public static void append(CharSequence from, File to, Charset charset) throws IOException {
         com.google.common.io.Files.append(from, to, charset);
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes to a temporary file in the destination directory, forces it and renames it to the destination
+     */
+    private static void writeAtomically(File to, CheckedConsumer<FileChannel, IOException> writer) throws IOException {
+        checkArgument(to != null, "Expected non-null to");
+        File destination = to.getAbsoluteFile();
+        File temporary = File.createTempFile(destination.getName(), ".tmp", destination.getParentFile());
+        try {
+            try (FileOutputStream output = new FileOutputStream(temporary)) {
+                FileChannel channel = output.getChannel();
+                writer.accept(channel);
+                channel.force(true);
+            }
+            if (!temporary.renameTo(destination)) {
+                throw new IOException(format("Can't rename '%s' to '%s'", temporary, destination));
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temporary.delete();
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Consumes the lines starting in the nominal range, a line belongs to the chunk it starts in
+     */
+    private static final class LineChunk implements Callable<Long> {
+
+        private final FileChannel channel;
+        private final long size;
+        private final long start;
+        private final long end;
+        private final Charset charset;
+        private final Consumer<String> consumer;
+        private final AtomicBoolean failed;
+
+        private static final int LINE_SLACK = 1 << 16;
+
+        LineChunk(FileChannel channel, long size, long start, long end,
+                  Charset charset, Consumer<String> consumer, AtomicBoolean failed) {
+            this.channel = channel;
+            this.size = size;
+            this.start = start;
+            this.end = end;
+            this.charset = charset;
+            this.consumer = consumer;
+            this.failed = failed;
+        }
+
+        @Override
+        public Long call() throws IOException {
+            if (failed.get()) {
+                return 0L;
+            }
+            // map from the byte before the nominal start, the last line may run past the nominal end
+            long mapStart = Math.max(0, start - 1);
+            int nominalEnd = (int) (end - mapStart);
+            ByteBuffer buffer = map(mapStart, (long) nominalEnd + LINE_SLACK);
+            int position = 0;
+            if (start > 0) {
+                position = indexOfNewLine(buffer, 0, nominalEnd) + 1;
+                if (position == 0) {
+                    // no line starts in this chunk
+                    return 0L;
+                }
+            }
+            int limit = buffer.limit();
+            if (end < size) {
+                int newLine = indexOfNewLine(buffer, nominalEnd - 1, buffer.limit());
+                if (newLine < 0 && mapStart + buffer.limit() < size) {
+                    buffer = map(mapStart, Integer.MAX_VALUE);
+                    newLine = indexOfNewLine(buffer, nominalEnd - 1, buffer.limit());
+                }
+                if (newLine >= 0) {
+                    limit = newLine + 1;
+                } else if (mapStart + buffer.limit() < size) {
+                    throw new IllegalStateException(format("Line too long to map at %s", end));
+                }
+            }
+
+            byte[] scratch = new byte[256];
+            long lines = 0;
+            while (position < limit && !failed.get()) {
+                int lineEnd = position;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r') {
+                    lineEnd++;
+                }
+                int length = lineEnd - position;
+                if (length > scratch.length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                for (int i = 0; i < length; i++) {
+                    scratch[i] = buffer.get(position + i);
+                }
+                try {
+                    consumer.accept(new String(scratch, 0, length, charset));
+                } catch (Exception e) {
+                    failed.set(true);
+                    throw new IllegalStateException(e);
+                }
+                lines++;
+                position = lineEnd + 1;
+                if (lineEnd < limit - 1 && buffer.get(lineEnd) == '\r' && buffer.get(lineEnd + 1) == '\n') {
+                    position++;
+                }
+            }
+            return lines;
+        }
+
+        private ByteBuffer map(long mapStart, long length) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, mapStart, Math.min(size - mapStart, length));
+        }
+
+        private static int indexOfNewLine(ByteBuffer buffer, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (buffer.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
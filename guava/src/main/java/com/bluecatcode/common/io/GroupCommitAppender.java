@@ -0,0 +1,497 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A long-lived, thread-safe file appender that groups the appends of concurrent producers into batches,
+ * written by a single writer thread to one {@link FileChannel}.
+ * <p>
+ * Unlike {@link Files#append(CharSequence, File, Charset)}, which opens and closes the file on every call,
+ * the file stays open and a batch is written when it reaches {@code maxBatchBytes}
+ * or when its oldest record is {@code maxDelay} old, whichever comes first.
+ * The producers encode their records and return, a producer blocks only while the batch being filled is full
+ * and the previous one is still being written (backpressure).
+ * </p>
+ * <p>
+ * The {@link Fsync} policy decides when the written batches are forced to the storage device.
+ * {@link #flush()} waits until the records appended so far are written (and forced, unless the policy is
+ * {@link Fsync#NONE}), {@link #close()} writes the remaining records.
+ * </p>
+ * Usage:
+ * <pre>{@code
+ * try (GroupCommitAppender audit = GroupCommitAppender.create(file, UTF_8)) {
+ *     audit.append(event + "\n");
+ * }
+ * }</pre>
+ */
+@Beta
+public class GroupCommitAppender implements Closeable {
+
+    /**
+     * When to force the written batches to the storage device
+     */
+    public enum Fsync {
+        /**
+         * Never force, leave it to the operating system, a crash may lose the recently written batches
+         */
+        NONE,
+        /**
+         * Force after every batch, {@link #flush()} returns only when the records are durable
+         */
+        BATCH,
+        /**
+         * Force at most once per sync interval, bounding the loss on a crash to the interval
+         */
+        INTERVAL
+    }
+
+    private static final int DEFAULT_MAX_BATCH_BYTES = 1 << 16;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 10;
+
+    private final File file;
+    private final Charset charset;
+    private final int maxBatchBytes;
+    private final long maxDelayNanos;
+    private final Fsync fsync;
+    private final long fsyncIntervalNanos;
+    private final FileChannel channel;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingReady = lock.newCondition();
+    private final Condition pendingSwapped = lock.newCondition();
+    private final Condition batchCommitted = lock.newCondition();
+
+    // guarded by lock
+    private UnsynchronizedBoundedByteArrayOutputStream pending;
+    private UnsynchronizedBoundedByteArrayOutputStream spare;
+    private long pendingRecords;
+    private long pendingFirstNanos;
+    private long pendingEnqueueNanos;
+    private long appended;
+    private long committed;
+    private long synced;
+    private long flushRequested;
+    private int blockedProducers;
+    private boolean closed;
+    private IOException failure;
+
+    // statistics, guarded by lock
+    private final long started = System.nanoTime();
+    private long bytes;
+    private long batches;
+    private long syncs;
+    private long latencyNanos;
+    private long maxLatencyNanos;
+
+    /**
+     * @param file          the file to append to, created if it doesn't exist
+     * @param charset       the charset to encode the records with
+     * @param maxBatchBytes the batch size that triggers a write
+     * @param maxDelay      the maximum time a record waits for its batch to fill
+     * @param fsync         the fsync policy
+     * @param fsyncInterval the minimum time between forces with {@link Fsync#INTERVAL}, ignored otherwise
+     * @param unit          the unit of the max delay and fsync interval
+     * @throws IllegalArgumentException if the file can't be opened
+     */
+    public GroupCommitAppender(File file, Charset charset, int maxBatchBytes,
+                               long maxDelay, Fsync fsync, long fsyncInterval, TimeUnit unit) {
+        checkArgument(file != null, "Expected non-null file");
+        checkArgument(charset != null, "Expected non-null charset");
+        checkArgument(maxBatchBytes > 0, format("Invalid max batch bytes: %s > 0", maxBatchBytes));
+        checkArgument(maxDelay >= 0, format("Invalid max delay: %s >= 0", maxDelay));
+        checkArgument(fsync != null, "Expected non-null fsync");
+        checkArgument(fsyncInterval >= 0, format("Invalid fsync interval: %s >= 0", fsyncInterval));
+        checkArgument(unit != null, "Expected non-null unit");
+        this.file = file;
+        this.charset = charset;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.fsync = fsync;
+        this.fsyncIntervalNanos = unit.toNanos(fsyncInterval);
+        this.pending = new UnsynchronizedBoundedByteArrayOutputStream(maxBatchBytes, Integer.MAX_VALUE - 8);
+        this.spare = new UnsynchronizedBoundedByteArrayOutputStream(maxBatchBytes, Integer.MAX_VALUE - 8);
+        try {
+            this.channel = new FileOutputStream(file, true).getChannel();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        this.writer = new ThreadFactoryBuilder().setNameFormat("group-commit-appender-%d").setDaemon(true).build()
+                .newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        write();
+                    }
+                });
+        this.writer.start();
+    }
+
+    /**
+     * Creates an appender with 64 KB batches, at most 10 ms delay and no fsync
+     *
+     * @param file    the file to append to, created if it doesn't exist
+     * @param charset the charset to encode the records with
+     * @return the appender
+     * @throws IllegalArgumentException if the file can't be opened
+     */
+    public static GroupCommitAppender create(File file, Charset charset) {
+        return new GroupCommitAppender(file, charset, DEFAULT_MAX_BATCH_BYTES,
+                DEFAULT_MAX_DELAY_MILLIS, Fsync.NONE, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends the record to the batch being filled, the record is written asynchronously
+     *
+     * @param from the record, including any line terminator
+     * @throws IllegalStateException if the appender is closed, the writer failed or the thread is interrupted
+     */
+    public void append(CharSequence from) {
+        checkArgument(from != null, "Expected non-null record");
+        byte[] record = from.toString().getBytes(charset);
+        lock.lock();
+        try {
+            checkOpen();
+            while (pending.size() > 0 && pending.size() + record.length > maxBatchBytes) {
+                // the batch is full for this record, the writer commits it without waiting for the delay
+                blockedProducers++;
+                try {
+                    pendingReady.signal();
+                    pendingSwapped.await();
+                } finally {
+                    blockedProducers--;
+                }
+                checkOpen();
+            }
+            long now = System.nanoTime();
+            if (pendingRecords == 0) {
+                pendingFirstNanos = now;
+                pendingReady.signal();
+            }
+            pending.write(record);
+            pendingRecords++;
+            pendingEnqueueNanos += now - started;
+            appended++;
+            if (pending.size() >= maxBatchBytes) {
+                pendingReady.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the records appended so far are written, and forced unless the policy is {@link Fsync#NONE}
+     *
+     * @throws IllegalStateException if the appender is closed, the writer failed or the thread is interrupted
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            checkOpen();
+            long target = appended;
+            flushRequested = Math.max(flushRequested, target);
+            pendingReady.signal();
+            while ((fsync == Fsync.NONE ? committed : synced) < target) {
+                batchCommitted.await();
+                if (failure != null) {
+                    throw new IllegalStateException(failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the remaining records, forces them unless the policy is {@link Fsync#NONE} and closes the file,
+     * closing an already closed appender has no effect
+     *
+     * @throws IOException if the writer failed or the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pendingReady.signal();
+            pendingSwapped.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        try {
+            if (channel.isOpen() && failure == null && fsync != Fsync.NONE) {
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return a snapshot of the throughput and latency statistics
+     */
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(committed, bytes, batches, syncs, System.nanoTime() - started,
+                    latencyNanos, maxLatencyNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("GroupCommitAppender.of(%s, %s max batch bytes, %s fsync)", file, maxBatchBytes, fsync);
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Appender closed");
+        }
+    }
+
+    /**
+     * The writer loop, swaps the pending batch with the spare one and writes it outside the lock
+     */
+    private void write() {
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+        while (true) {
+            UnsynchronizedBoundedByteArrayOutputStream batch;
+            long records;
+            long enqueueNanos;
+            long firstNanos;
+            boolean flushing;
+            lock.lock();
+            try {
+                while (!closed && !ready(lastSync, unsynced)) {
+                    pendingReady.awaitNanos(waitNanos(lastSync, unsynced));
+                }
+                if (closed && pendingRecords == 0) {
+                    return;
+                }
+                batch = pending;
+                records = pendingRecords;
+                enqueueNanos = pendingEnqueueNanos;
+                firstNanos = pendingFirstNanos;
+                flushing = fsync != Fsync.NONE && flushRequested > synced;
+                pending = spare;
+                pendingRecords = 0;
+                pendingEnqueueNanos = 0;
+                pendingSwapped.signalAll();
+            } catch (InterruptedException e) {
+                fail(new InterruptedIOException("Writer interrupted"));
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            int size = batch.size();
+            boolean forced = false;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch.buffer(), 0, size);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                unsynced |= size > 0;
+                long now = System.nanoTime();
+                if (unsynced && (fsync == Fsync.BATCH || flushing
+                        || (fsync == Fsync.INTERVAL && now - lastSync >= fsyncIntervalNanos))) {
+                    channel.force(false);
+                    lastSync = System.nanoTime();
+                    unsynced = false;
+                    forced = true;
+                }
+            } catch (IOException e) {
+                fail(e);
+                return;
+            } finally {
+                batch.reset();
+            }
+
+            long now = System.nanoTime();
+            lock.lock();
+            try {
+                spare = batch;
+                committed += records;
+                bytes += size;
+                batches += records > 0 ? 1 : 0;
+                if (!unsynced) {
+                    // forced, or nothing was written since the last force, e.g. empty records
+                    synced = committed;
+                }
+                if (forced) {
+                    syncs++;
+                }
+                latencyNanos += records * (now - started) - enqueueNanos;
+                maxLatencyNanos = Math.max(maxLatencyNanos, records > 0 ? now - firstNanos : 0);
+                batchCommitted.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return true if the pending batch is full (or a record waits for it to be committed), old enough
+     * or flushed, or if a force is requested or due
+     */
+    private boolean ready(long lastSync, boolean unsynced) {
+        long now = System.nanoTime();
+        if (pendingRecords > 0) {
+            return pending.size() >= maxBatchBytes || blockedProducers > 0 || flushRequested > committed
+                    || now - pendingFirstNanos >= maxDelayNanos;
+        }
+        return unsynced && ((fsync != Fsync.NONE && flushRequested > synced)
+                || (fsync == Fsync.INTERVAL && now - lastSync >= fsyncIntervalNanos));
+    }
+
+    private long waitNanos(long lastSync, boolean unsynced) {
+        long now = System.nanoTime();
+        long wait = Long.MAX_VALUE;
+        if (pendingRecords > 0) {
+            wait = pendingFirstNanos + maxDelayNanos - now;
+        }
+        if (fsync == Fsync.INTERVAL && unsynced) {
+            wait = Math.min(wait, lastSync + fsyncIntervalNanos - now);
+        }
+        return Math.max(1, wait);
+    }
+
+    private void fail(IOException e) {
+        lock.lock();
+        try {
+            failure = e;
+            pendingSwapped.signalAll();
+            batchCommitted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The throughput and latency statistics of an appender
+     */
+    public static final class Stats {
+
+        private final long records;
+        private final long bytes;
+        private final long batches;
+        private final long syncs;
+        private final long elapsedNanos;
+        private final long latencyNanos;
+        private final long maxLatencyNanos;
+
+        Stats(long records, long bytes, long batches, long syncs,
+              long elapsedNanos, long latencyNanos, long maxLatencyNanos) {
+            this.records = records;
+            this.bytes = bytes;
+            this.batches = batches;
+            this.syncs = syncs;
+            this.elapsedNanos = elapsedNanos;
+            this.latencyNanos = latencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+        }
+
+        /**
+         * @return the number of records written
+         */
+        public long records() {
+            return records;
+        }
+
+        /**
+         * @return the number of bytes written
+         */
+        public long bytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the number of batches written
+         */
+        public long batches() {
+            return batches;
+        }
+
+        /**
+         * @return the number of forces to the storage device
+         */
+        public long syncs() {
+            return syncs;
+        }
+
+        /**
+         * @return the average number of records per batch
+         */
+        public double recordsPerBatch() {
+            return batches == 0 ? 0 : (double) records / batches;
+        }
+
+        /**
+         * @return the number of records written per second since the appender was opened
+         */
+        public double recordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @param unit the time unit
+         * @return the average time from append to written
+         */
+        public long averageLatency(TimeUnit unit) {
+            return records == 0 ? 0 : unit.convert(latencyNanos / records, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @param unit the time unit
+         * @return the longest time from append to written
+         */
+        public long maxLatency(TimeUnit unit) {
+            return unit.convert(maxLatencyNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return format("Stats.of(%s records, %s bytes, %s batches, %s syncs, %.0f records/s, "
+                            + "%s us average latency, %s us max latency)",
+                    records, bytes, batches, syncs, recordsPerSecond(),
+                    averageLatency(TimeUnit.MICROSECONDS), maxLatency(TimeUnit.MICROSECONDS));
+        }
+    }
+}
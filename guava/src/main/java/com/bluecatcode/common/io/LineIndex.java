@@ -0,0 +1,341 @@
+package com.bluecatcode.common.io;
+
+import com.bluecatcode.common.functions.Consumer;
+import com.google.common.annotations.Beta;
+import com.google.common.hash.HashCode;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A sparse index of the line offsets of a (large) text file, for reading arbitrary lines
+ * without scanning the whole file.
+ * <p>
+ * The index records the byte offset of every {@code interval}-th line in a {@code long[]},
+ * so reading lines {@code from..to} seeks to the closest indexed line before {@code from}
+ * and scans at most {@code interval - 1} lines before the first requested one.
+ * With the default interval a 100 million line file is indexed in about 800 KB.
+ * </p>
+ * <p>
+ * Lines end with {@code \n} or {@code \r\n}, a trailing line without a line feed isn't indexed yet.
+ * {@link #update()} extends the index with the lines appended since the previous update,
+ * a truncated or rotated file (detected like {@link FileFollower} does) is indexed again from the beginning.
+ * The index can be saved to and loaded from a sidecar file, see {@link #open(File, Charset, int, File)}.
+ * </p>
+ * <b>Not thread-safe</b>.
+ */
+@Beta
+public class LineIndex {
+
+    public static final int DEFAULT_INTERVAL = 1024;
+    public static final int HEAD_SIZE = FileHead.SIZE;
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int MAGIC = 0x4c494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 4 + FileHead.HASH_BYTES + 4;
+
+    private final File file;
+    private final Charset charset;
+    private final int interval;
+
+    private long[] offsets = new long[16];
+    private int size = 1;
+    private long lines;
+    private long indexed;
+    private FileHead head = FileHead.EMPTY;
+
+    private LineIndex(File file, Charset charset, int interval) {
+        checkArgument(file != null, "Expected non-null file");
+        checkArgument(charset != null, "Expected non-null charset");
+        checkArgument(interval > 0, format("Invalid interval: %s > 0", interval));
+        checkArgument("\r\n".getBytes(charset).length == 2,
+                "Unsupported charset, line terminators must be single bytes: %s", charset);
+        this.file = file;
+        this.charset = charset;
+        this.interval = interval;
+    }
+
+    /**
+     * Indexes the file in memory
+     *
+     * @param file     the file to index
+     * @param charset  the charset of the file, must encode line terminators as single bytes, e.g. UTF-8
+     * @param interval the number of lines between the indexed offsets
+     * @return the index
+     * @throws IllegalArgumentException if the file can't be read
+     */
+    public static LineIndex create(File file, Charset charset, int interval) {
+        LineIndex index = new LineIndex(file, charset, interval);
+        index.update();
+        return index;
+    }
+
+    /**
+     * Loads the index from the sidecar file, updates it with the lines appended since it was saved
+     * and saves it back if it changed, including when the file was truncated or rotated.
+     * A sidecar file that doesn't exist or was saved with a different interval is replaced.
+     *
+     * @param file     the file to index
+     * @param charset  the charset of the file, must encode line terminators as single bytes, e.g. UTF-8
+     * @param interval the number of lines between the indexed offsets
+     * @param sidecar  the sidecar file
+     * @return the index
+     * @throws IllegalArgumentException if the file or the sidecar file can't be read, or the sidecar can't be saved
+     */
+    public static LineIndex open(File file, Charset charset, int interval, File sidecar) {
+        checkArgument(sidecar != null, "Expected non-null sidecar");
+        LineIndex index = new LineIndex(file, charset, interval);
+        boolean loaded = sidecar.exists() && index.load(sidecar);
+        long indexed = index.indexed;
+        FileHead head = index.head;
+        index.update();
+        if (!loaded || index.indexed != indexed || index.head != head) {
+            index.save(sidecar);
+        }
+        return index;
+    }
+
+    /**
+     * Indexes the lines appended since the last update, or all lines if the file was truncated or rotated
+     *
+     * @return the number of lines indexed, zero if the file doesn't exist
+     * @throws IllegalArgumentException if the file can't be read
+     */
+    public long update() {
+        if (!file.isFile()) {
+            return 0;
+        }
+
+        long previous = lines;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            long length = channel.size();
+            if (checkHead(channel, length)) {
+                previous = 0;
+                reset();
+                checkHead(channel, length);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            long position = indexed;
+            while (position < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                byte[] bytes = buffer.array();
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n') {
+                        lines++;
+                        indexed = position + i + 1;
+                        if (lines % interval == 0) {
+                            add(indexed);
+                        }
+                    }
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return lines - previous;
+    }
+
+    /**
+     * Passes the indexed lines {@code from} (inclusive) to {@code to} (exclusive) to the consumer
+     *
+     * @param from     the first line, zero based
+     * @param to       the line after the last one
+     * @param consumer the line consumer
+     * @return the number of lines consumed, less than requested only if the file was truncated since the update
+     * @throws IllegalArgumentException if the range is invalid or the file can't be read
+     * @throws IllegalStateException    if the consumer fails
+     */
+    public long readLines(long from, long to, Consumer<String> consumer) {
+        checkArgument(from >= 0 && from <= to, format("Invalid range: 0 <= %s <= %s", from, to));
+        checkArgument(to <= lines, format("Invalid range: %s <= %s lines", to, lines));
+        checkArgument(consumer != null, "Expected non-null consumer");
+        if (from == to) {
+            return 0;
+        }
+
+        int block = (int) (from / interval);
+        long line = (long) block * interval;
+        long position = offsets[block];
+        long consumed = 0;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, indexed - position));
+            byte[] bytes = new byte[256];
+            int length = 0;
+            while (line < to) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+                byte[] chunk = buffer.array();
+                for (int i = 0; i < read && line < to; i++) {
+                    byte b = chunk[i];
+                    if (b != '\n') {
+                        if (line >= from) {
+                            if (length == bytes.length) {
+                                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                            }
+                            bytes[length++] = b;
+                        }
+                        continue;
+                    }
+                    if (line >= from) {
+                        int end = length > 0 && bytes[length - 1] == '\r' ? length - 1 : length;
+                        try {
+                            consumer.accept(new String(bytes, 0, end, charset));
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                        length = 0;
+                        consumed++;
+                    }
+                    line++;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return consumed;
+    }
+
+    /**
+     * @param line the line, zero based
+     * @return the indexed line
+     * @throws IllegalArgumentException if the line isn't indexed or the file can't be read
+     */
+    public String line(long line) {
+        final String[] result = new String[1];
+        readLines(line, line + 1, value -> result[0] = value);
+        checkArgument(result[0] != null, format("Missing line %s, the file was truncated", line));
+        return result[0];
+    }
+
+    /**
+     * @return the number of indexed lines
+     */
+    public long lines() {
+        return lines;
+    }
+
+    /**
+     * @return the number of lines between the indexed offsets
+     */
+    public int interval() {
+        return interval;
+    }
+
+    /**
+     * Atomically saves the index to the sidecar file
+     *
+     * @param sidecar the sidecar file
+     * @throws IllegalArgumentException if the sidecar file can't be saved
+     */
+    public void save(File sidecar) {
+        checkArgument(sidecar != null, "Expected non-null sidecar");
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 8 * size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(interval)
+                .putLong(lines).putLong(indexed).putInt(head.length()).put(head.hash().asBytes()).putInt(size);
+        buffer.asLongBuffer().put(offsets, 0, size);
+        buffer.rewind();
+        try {
+            Files.writeAtomically(buffer, sidecar);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("LineIndex.of(%s, %s, %s)", file, lines, interval);
+    }
+
+    /**
+     * @return false if the sidecar file was saved with a different interval
+     */
+    private boolean load(File sidecar) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IllegalArgumentException(format("Malformed line index '%s'", sidecar));
+            }
+            if (input.readInt() != interval) {
+                return false;
+            }
+            long loadedLines = input.readLong();
+            long loadedIndexed = input.readLong();
+            int loadedHeadLength = input.readInt();
+            byte[] loadedHeadHash = new byte[FileHead.HASH_BYTES];
+            input.readFully(loadedHeadHash);
+            int loadedSize = input.readInt();
+            if (loadedLines < 0 || loadedIndexed < loadedLines
+                    || loadedHeadLength < 0 || loadedHeadLength > HEAD_SIZE
+                    || loadedSize != loadedLines / interval + 1) {
+                throw new IllegalArgumentException(format("Malformed line index '%s'", sidecar));
+            }
+            long[] loadedOffsets = new long[Math.max(16, loadedSize)];
+            for (int i = 0; i < loadedSize; i++) {
+                loadedOffsets[i] = input.readLong();
+            }
+            lines = loadedLines;
+            indexed = loadedIndexed;
+            head = new FileHead(loadedHeadLength, HashCode.fromBytes(loadedHeadHash));
+            offsets = loadedOffsets;
+            size = loadedSize;
+            return true;
+        } catch (EOFException e) {
+            throw new IllegalArgumentException(format("Malformed line index '%s'", sidecar), e);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private void add(long offset) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[size++] = offset;
+    }
+
+    private void reset() {
+        offsets = new long[16];
+        size = 1;
+        lines = 0;
+        indexed = 0;
+        head = FileHead.EMPTY;
+    }
+
+    /**
+     * Extends the head of the file
+     *
+     * @return true if the file was truncated or rotated since the last update
+     */
+    private boolean checkHead(FileChannel channel, long length) throws IOException {
+        if (length < indexed || !head.matches(channel, length)) {
+            return true;
+        }
+        head = head.extend(channel, length);
+        return false;
+    }
+}
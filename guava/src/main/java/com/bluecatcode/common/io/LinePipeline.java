@@ -0,0 +1,247 @@
+package com.bluecatcode.common.io;
+
+import com.bluecatcode.common.functions.Consumer;
+import com.google.common.annotations.Beta;
+import com.google.common.io.CharSource;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Reads the lines of a file on the calling thread and hands them in batches to worker threads,
+ * so that reading and processing overlap and the consumer is called once per batch.
+ * <p>
+ * The batches pass through a bounded queue, a reader faster than the workers blocks until there is room
+ * (backpressure). The first consumer failure stops the reader, the workers discard the remaining batches
+ * and the failure is rethrown on the calling thread.
+ * </p>
+ * Usage:
+ * <pre>{@code
+ * LinePipeline.Stats stats = new LinePipeline(1000, 16, 4).run(file, UTF_8, batch -> index(batch));
+ * }</pre>
+ *
+ * @see Files#consumeLines(File, Charset, Consumer)
+ */
+@Beta
+public class LinePipeline {
+
+    private static final List<String> END = Collections.emptyList();
+
+    private final int batchSize;
+    private final int queueCapacity;
+    private final int workers;
+
+    /**
+     * @param batchSize     the number of lines per batch
+     * @param queueCapacity the number of batches waiting for the workers
+     * @param workers       the number of worker threads
+     */
+    public LinePipeline(int batchSize, int queueCapacity, int workers) {
+        checkArgument(batchSize > 0, format("Invalid batch size: %s > 0", batchSize));
+        checkArgument(queueCapacity > 0, format("Invalid queue capacity: %s > 0", queueCapacity));
+        checkArgument(workers > 0, format("Invalid workers: %s > 0", workers));
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.workers = workers;
+    }
+
+    /**
+     * Consumes all lines of the file, returning when all batches are consumed
+     *
+     * @param file     the file to read
+     * @param charset  the charset of the file
+     * @param consumer the thread-safe batch consumer, the batches are read-only
+     * @return the pipeline statistics
+     * @throws IllegalArgumentException if the file can't be read
+     * @throws IllegalStateException    if the consumer fails or the calling thread is interrupted
+     */
+    public Stats run(File file, Charset charset, final Consumer<List<String>> consumer) {
+        checkArgument(file != null, "Expected non-null file");
+        checkArgument(charset != null, "Expected non-null charset");
+        checkArgument(consumer != null, "Expected non-null consumer");
+
+        final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicLong workerIdleNanos = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(workers,
+                new ThreadFactoryBuilder().setNameFormat("line-pipeline-%d").setDaemon(true).build());
+
+        long started = System.nanoTime();
+        long lines = 0;
+        long batches = 0;
+        long readerBlockedNanos = 0;
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        while (true) {
+                            long waiting = System.nanoTime();
+                            List<String> batch = queue.take();
+                            workerIdleNanos.addAndGet(System.nanoTime() - waiting);
+                            if (batch == END) {
+                                return null;
+                            }
+                            if (failure.get() == null) {
+                                try {
+                                    consumer.accept(batch);
+                                } catch (Throwable e) {
+                                    // keep draining, so that the reader never blocks on a full queue
+                                    failure.compareAndSet(null, e);
+                                }
+                            }
+                        }
+                    }
+                }));
+            }
+
+            CharSource source = com.google.common.io.Files.asCharSource(file, charset);
+            try (BufferedReader reader = source.openBufferedStream()) {
+                List<String> batch = new ArrayList<>(batchSize);
+                for (String line; failure.get() == null && (line = reader.readLine()) != null; ) {
+                    batch.add(line);
+                    lines++;
+                    if (batch.size() == batchSize) {
+                        readerBlockedNanos += put(queue, Collections.unmodifiableList(batch));
+                        batches++;
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty() && failure.get() == null) {
+                    readerBlockedNanos += put(queue, Collections.unmodifiableList(batch));
+                    batches++;
+                }
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    put(queue, END);
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        Throwable cause = failure.get();
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause != null) {
+            throw new IllegalStateException(cause);
+        }
+        return new Stats(lines, batches, System.nanoTime() - started, readerBlockedNanos, workerIdleNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return format("LinePipeline.of(%s batch size, %s queue capacity, %s workers)", batchSize, queueCapacity, workers);
+    }
+
+    private static long put(BlockingQueue<List<String>> queue, List<String> batch) throws InterruptedException {
+        if (queue.offer(batch)) {
+            return 0;
+        }
+        long blocked = System.nanoTime();
+        queue.put(batch);
+        return System.nanoTime() - blocked;
+    }
+
+    /**
+     * The throughput statistics of a pipeline run
+     */
+    public static final class Stats {
+
+        private final long lines;
+        private final long batches;
+        private final long elapsedNanos;
+        private final long readerBlockedNanos;
+        private final long workerIdleNanos;
+
+        Stats(long lines, long batches, long elapsedNanos, long readerBlockedNanos, long workerIdleNanos) {
+            this.lines = lines;
+            this.batches = batches;
+            this.elapsedNanos = elapsedNanos;
+            this.readerBlockedNanos = readerBlockedNanos;
+            this.workerIdleNanos = workerIdleNanos;
+        }
+
+        /**
+         * @return the number of lines read
+         */
+        public long lines() {
+            return lines;
+        }
+
+        /**
+         * @return the number of batches consumed
+         */
+        public long batches() {
+            return batches;
+        }
+
+        /**
+         * @param unit the time unit
+         * @return the wall time of the run
+         */
+        public long elapsed(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @param unit the time unit
+         * @return the time the reader waited for room in the queue, high if the workers are the bottleneck
+         */
+        public long readerBlocked(TimeUnit unit) {
+            return unit.convert(readerBlockedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @param unit the time unit
+         * @return the total time the workers waited for batches, high if the reader is the bottleneck
+         */
+        public long workerIdle(TimeUnit unit) {
+            return unit.convert(workerIdleNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return the number of lines per second
+         */
+        public double linesPerSecond() {
+            return elapsedNanos == 0 ? 0 : lines * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return format("Stats.of(%s lines, %s batches, %s ms, %.0f lines/s, %s ms reader blocked, %s ms worker idle)",
+                    lines, batches, elapsed(TimeUnit.MILLISECONDS), linesPerSecond(),
+                    readerBlocked(TimeUnit.MILLISECONDS), workerIdle(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A reusable, flyweight view of a UTF-8 (or ASCII) encoded line in a byte buffer.
+ * <p>
+ * The view doesn't copy the line. A pure ASCII line is read straight from the buffer,
+ * any other line is decoded once into a reused character array, so presenting a line allocates nothing.
+ * The only allocating methods are {@link #toString()} and {@link #subSequence(int, int)}.
+ * </p>
+ * <b>Note:</b> the view is only valid for the duration of the callback it is passed to,
+ * it is reused for the next line. Call {@link #toString()} to keep the line.
+ *
+ * @see Files#consumeLineViews(java.io.File, com.bluecatcode.common.functions.Consumer)
+ */
+@Beta
+public final class LineView implements CharSequence {
+
+    private static final char REPLACEMENT = '\ufffd';
+
+    private ByteBuffer buffer;
+    private int start;
+    private int byteLength;
+    private long offset;
+    private boolean ascii;
+
+    private char[] chars = new char[128];
+    private int charLength;
+    private boolean decoded;
+
+    LineView() {
+    }
+
+    /**
+     * Points the view at a line
+     *
+     * @param buffer     the buffer holding the line
+     * @param start      the index of the line start in the buffer
+     * @param byteLength the number of bytes of the line, excluding the terminator
+     * @param offset     the offset of the line start in the content
+     * @param ascii      true if all bytes of the line are ASCII
+     */
+    void set(ByteBuffer buffer, int start, int byteLength, long offset, boolean ascii) {
+        this.buffer = buffer;
+        this.start = start;
+        this.byteLength = byteLength;
+        this.offset = offset;
+        this.ascii = ascii;
+        this.decoded = false;
+    }
+
+    /**
+     * @return the number of characters (UTF-16 code units) of the line
+     */
+    @Override
+    public int length() {
+        if (ascii) {
+            return byteLength;
+        }
+        decode();
+        return charLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (ascii) {
+            if (index < 0 || index >= byteLength) {
+                throw new IndexOutOfBoundsException("Invalid index: " + index);
+            }
+            return (char) buffer.get(start + index);
+        }
+        decode();
+        if (index < 0 || index >= charLength) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return chars[index];
+    }
+
+    /**
+     * @return a new string with the characters in the range
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    /**
+     * @param prefix the prefix to check
+     * @return true if the line starts with the prefix
+     */
+    public boolean startsWith(CharSequence prefix) {
+        checkArgument(prefix != null, "Expected non-null prefix");
+        int length = prefix.length();
+        if (length > length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of bytes of the line, excluding the terminator
+     */
+    public int byteLength() {
+        return byteLength;
+    }
+
+    /**
+     * @param index the byte index in the line
+     * @return the byte at the index
+     */
+    public byte byteAt(int index) {
+        if (index < 0 || index >= byteLength) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return buffer.get(start + index);
+    }
+
+    /**
+     * @return the offset of the line start in the content
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * @return true if all characters of the line are ASCII
+     */
+    public boolean isAscii() {
+        return ascii;
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        if (ascii) {
+            char[] copy = ensureChars(byteLength);
+            for (int i = 0; i < byteLength; i++) {
+                copy[i] = (char) buffer.get(start + i);
+            }
+            return new String(copy, 0, byteLength);
+        }
+        decode();
+        return new String(chars, 0, charLength);
+    }
+
+    private char[] ensureChars(int length) {
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        return chars;
+    }
+
+    /**
+     * Decodes UTF-8 into the reused character array, malformed input is replaced with U+FFFD
+     */
+    private void decode() {
+        if (decoded) {
+            return;
+        }
+        char[] target = ensureChars(byteLength);
+        int length = 0;
+        int i = start;
+        int end = start + byteLength;
+        while (i < end) {
+            int b = buffer.get(i++);
+            if (b >= 0) {
+                target[length++] = (char) b;
+                continue;
+            }
+            int continuations;
+            int codePoint;
+            int min;
+            if ((b & 0xe0) == 0xc0) {
+                continuations = 1;
+                codePoint = b & 0x1f;
+                min = 0x80;
+            } else if ((b & 0xf0) == 0xe0) {
+                continuations = 2;
+                codePoint = b & 0x0f;
+                min = 0x800;
+            } else if ((b & 0xf8) == 0xf0) {
+                continuations = 3;
+                codePoint = b & 0x07;
+                min = 0x10000;
+            } else {
+                target[length++] = REPLACEMENT;
+                continue;
+            }
+            int read = 0;
+            while (read < continuations && i < end && (buffer.get(i) & 0xc0) == 0x80) {
+                codePoint = (codePoint << 6) | (buffer.get(i++) & 0x3f);
+                read++;
+            }
+            if (read < continuations || codePoint < min || codePoint > Character.MAX_CODE_POINT
+                    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                target[length++] = REPLACEMENT;
+            } else if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                target[length++] = (char) (Character.MIN_HIGH_SURROGATE + ((codePoint - 0x10000) >>> 10));
+                target[length++] = (char) (Character.MIN_LOW_SURROGATE + (codePoint & 0x3ff));
+            } else {
+                target[length++] = (char) codePoint;
+            }
+        }
+        charLength = length;
+        decoded = true;
+    }
+}
@@ -0,0 +1,292 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A cache of immutable properties file snapshots, keyed by the absolute file path,
+ * for configuration looked up on every request.
+ * <p>
+ * Unlike {@link Files#getFileAsProperties(File)}, a lookup doesn't read the file or lock,
+ * the file is read once and the snapshot is shared. A background thread polls the modification time
+ * and the length of the cached files and atomically replaces the snapshot of a changed file,
+ * then notifies the listeners. A file that can't be read keeps its last snapshot.
+ * </p>
+ * <p>
+ * A change is applied once the modification time and length are the same on two consecutive polls
+ * and didn't change while the file was read, which skips most of the states of a file being rewritten in place.
+ * A writer that pauses for longer than the poll interval can still have a partial snapshot published,
+ * followed by the complete one on a later poll. Replace the files atomically to never see a partial snapshot,
+ * e.g. with {@link Files#writeAtomically(CharSequence, File, java.nio.charset.Charset)}.
+ * </p>
+ * <p>
+ * Classpath resources in a directory can be cached by their file,
+ * see {@link Resources#getResourceAsFilePath(Class, String)}.
+ * </p>
+ * <b>Note:</b> a change that keeps the length within the file system's modification time
+ * resolution (e.g. one second) can be missed until the next change.
+ */
+@Beta
+public class PropertiesCache implements Closeable {
+
+    private static final Logger log = Logger.getLogger(PropertiesCache.class.getName());
+
+    /**
+     * Notified when the snapshot of a file changes
+     */
+    public interface Listener {
+
+        /**
+         * @param file     the absolute file
+         * @param previous the previous snapshot
+         * @param current  the current snapshot
+         */
+        void changed(File file, ImmutableMap<String, String> previous, ImmutableMap<String, String> current);
+    }
+
+    private final ConcurrentMap<File, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final ConcurrentMap<File, Stat> changes = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService poller;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param pollInterval the time between the checks for changes, zero to only check on {@link #refresh()}
+     * @param unit         the poll interval unit
+     */
+    public PropertiesCache(long pollInterval, TimeUnit unit) {
+        checkArgument(pollInterval >= 0, format("Invalid poll interval: %s >= 0", pollInterval));
+        checkArgument(unit != null, "Expected non-null unit");
+        if (pollInterval == 0) {
+            this.poller = null;
+            return;
+        }
+        this.poller = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("properties-cache-%d").setDaemon(true).build());
+        this.poller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, pollInterval, pollInterval, unit);
+    }
+
+    /**
+     * @param file the properties file
+     * @return the cached snapshot of the properties, loaded on the first lookup
+     * @throws IllegalArgumentException if the file isn't cached and can't be read
+     */
+    public ImmutableMap<String, String> get(File file) {
+        checkArgument(file != null, "Expected non-null file");
+        File key = file.getAbsoluteFile();
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot != null) {
+            hits.incrementAndGet();
+            return snapshot.properties;
+        }
+        misses.incrementAndGet();
+        Snapshot loaded = load(key);
+        Snapshot existing = snapshots.putIfAbsent(key, loaded);
+        return existing == null ? loaded.properties : existing.properties;
+    }
+
+    /**
+     * Reloads the files changed since the previous refresh and not changed since,
+     * swapping their snapshots and notifying the listeners
+     *
+     * @return the number of snapshots that changed
+     */
+    public int refresh() {
+        int changed = 0;
+        for (File file : snapshots.keySet()) {
+            Snapshot current = snapshots.get(file);
+            if (current == null) {
+                continue;
+            }
+            Stat stat = Stat.of(file);
+            if (stat.equals(current.stat)) {
+                changes.remove(file);
+                continue;
+            }
+            if (!stat.equals(changes.put(file, stat))) {
+                // not settled yet, the file may be being written
+                continue;
+            }
+            changes.remove(file);
+            Snapshot reloaded;
+            try {
+                reloaded = load(file);
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                log.log(Level.FINE, format("Can't reload '%s', keeping the last snapshot", file), e);
+                continue;
+            }
+            Stat reread = Stat.of(file);
+            if (!reread.equals(reloaded.stat)) {
+                // changed while being read, the snapshot may be partial
+                changes.put(file, reread);
+                continue;
+            }
+            if (!snapshots.replace(file, current, reloaded)) {
+                continue;
+            }
+            reloads.incrementAndGet();
+            if (!reloaded.properties.equals(current.properties)) {
+                changed++;
+                notifyListeners(file, current.properties, reloaded.properties);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param listener the listener to notify on the polling thread (or the thread calling {@link #refresh()})
+     */
+    public void addListener(Listener listener) {
+        checkArgument(listener != null, "Expected non-null listener");
+        listeners.add(listener);
+    }
+
+    /**
+     * @param file the properties file
+     */
+    public void invalidate(File file) {
+        checkArgument(file != null, "Expected non-null file");
+        snapshots.remove(file.getAbsoluteFile());
+        changes.remove(file.getAbsoluteFile());
+    }
+
+    /**
+     * @return the number of lookups served from the cache
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that loaded the file
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of reloads of changed files
+     */
+    public long reloads() {
+        return reloads.get();
+    }
+
+    /**
+     * @return the number of failed reloads
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the number of cached files
+     */
+    public int size() {
+        return snapshots.size();
+    }
+
+    /**
+     * Stops polling, the cached snapshots remain available
+     */
+    @Override
+    public void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("PropertiesCache.of(%s files, %s hits, %s misses, %s reloads, %s failures)",
+                size(), hits(), misses(), reloads(), failures());
+    }
+
+    private void notifyListeners(File file, ImmutableMap<String, String> previous, ImmutableMap<String, String> current) {
+        for (Listener listener : listeners) {
+            try {
+                listener.changed(file, previous, current);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, format("Listener failed on the change of '%s'", file), e);
+            }
+        }
+    }
+
+    private static Snapshot load(File file) {
+        // stat before reading, so that a change during the read is seen by the next check
+        Stat stat = Stat.of(file);
+        ImmutableMap<String, String> properties = Maps.fromProperties(Files.getFileAsProperties(file));
+        return new Snapshot(properties, stat);
+    }
+
+    private static final class Snapshot {
+
+        private final ImmutableMap<String, String> properties;
+        private final Stat stat;
+
+        Snapshot(ImmutableMap<String, String> properties, Stat stat) {
+            this.properties = properties;
+            this.stat = stat;
+        }
+    }
+
+    private static final class Stat {
+
+        private final long lastModified;
+        private final long length;
+
+        private Stat(long lastModified, long length) {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        static Stat of(File file) {
+            return new Stat(file.lastModified(), file.length());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Stat)) {
+                return false;
+            }
+            Stat stat = (Stat) o;
+            return lastModified == stat.lastModified && length == stat.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Longs.hashCode(lastModified) + Longs.hashCode(length);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A bounded output stream with the limit semantics of {@link BoundedByteArrayOutputStream},
+ * that keeps the data in a list of segments instead of a single array.
+ * <p>
+ * Growing allocates a new segment (twice the previous one, up to {@value #MAX_SEGMENT_SIZE} bytes)
+ * and never copies the written bytes, the content can be drained with {@link #writeTo(WritableByteChannel)},
+ * {@link #asReadOnlyByteBuffers()} or {@link #asInputStream()} without materializing a single array.
+ * </p>
+ * <b>Not thread-safe</b>, the stream is meant to have a single writer.
+ *
+ * @see BoundedByteArrayOutputStream
+ */
+@Beta
+public class SegmentedBoundedByteArrayOutputStream extends OutputStream {
+
+    public static final int MAX_SEGMENT_SIZE = 1 << 20;
+
+    private final int limit;
+    private final List<byte[]> segments = new ArrayList<>();
+    private byte[] current;
+    private int position;
+    private int count;
+
+    public SegmentedBoundedByteArrayOutputStream(int limit) {
+        this(32, limit);
+    }
+
+    public SegmentedBoundedByteArrayOutputStream(int capacity, int limit) {
+        checkArgument(capacity > 0, format("Invalid capacity: %s > 0", capacity));
+        checkArgument(limit > 0, format("Invalid limit: %s > 0", limit));
+        this.limit = limit;
+        this.current = new byte[Math.min(capacity, limit)];
+        this.segments.add(current);
+    }
+
+    @Override
+    public void write(int b) {
+        if (count >= limit) {
+            throw new IllegalArgumentException(format("Reached the limit of the buffer (%s >= %s)", count, limit));
+        }
+        if (position == current.length) {
+            nextSegment();
+        }
+        current[position++] = (byte) b;
+        count++;
+    }
+
+    @Override
+    public void write(@Nonnull byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] bytes, int offset, int length) {
+        if ((offset < 0) || (offset > bytes.length)) {
+            throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+        }
+        if ((length < 0) || ((offset + length) > bytes.length) || ((offset + length) < 0)) {
+            throw new IndexOutOfBoundsException("Invalid length: " + length);
+        }
+        if (length == 0) {
+            return;
+        }
+
+        int newSize = count + length;
+        if (newSize > limit || newSize < 0) {
+            throw new IllegalArgumentException(format("Reached the buffer limit (%s > %s)", newSize, limit));
+        }
+        while (length > 0) {
+            if (position == current.length) {
+                nextSegment();
+            }
+            int n = Math.min(length, current.length - position);
+            System.arraycopy(bytes, offset, current, position, n);
+            position += n;
+            offset += n;
+            length -= n;
+            // the next segment is sized from the remaining limit
+            count += n;
+        }
+    }
+
+    /**
+     * Writes the complete contents of this stream to the output stream
+     *
+     * @param out the output stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(@WillNotClose OutputStream out) throws IOException {
+        int remaining = count;
+        for (byte[] segment : segments) {
+            int n = Math.min(remaining, segment.length);
+            out.write(segment, 0, n);
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Writes the complete contents of this stream to the blocking channel,
+     * with a single gathering write if the channel supports it
+     *
+     * @param channel the channel to write to
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    public long writeTo(@WillNotClose WritableByteChannel channel) throws IOException {
+        checkArgument(channel != null, "Expected non-null channel");
+        ByteBuffer[] buffers = asReadOnlyByteBuffers();
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            long written = 0;
+            int first = 0;
+            while (written < count) {
+                written += gathering.write(buffers, first, buffers.length - first);
+                while (first < buffers.length && !buffers[first].hasRemaining()) {
+                    first++;
+                }
+            }
+            return written;
+        }
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns read-only views of the written bytes, one per segment, without copying.
+     * <p>
+     * The views share the segments with this stream, they <b>must not</b> be used after a {@link #reset()}.
+     * </p>
+     *
+     * @return the buffers in order
+     */
+    public ByteBuffer[] asReadOnlyByteBuffers() {
+        int used = segments.size();
+        ByteBuffer[] buffers = new ByteBuffer[used];
+        int remaining = count;
+        for (int i = 0; i < used; i++) {
+            byte[] segment = segments.get(i);
+            int n = Math.min(remaining, segment.length);
+            buffers[i] = ByteBuffer.wrap(segment, 0, n).asReadOnlyBuffer();
+            remaining -= n;
+        }
+        return buffers;
+    }
+
+    /**
+     * Returns an input stream over the bytes written so far, without copying.
+     * <p>
+     * The stream shares the segments with this stream, it <b>must not</b> be used after a {@link #reset()}.
+     * </p>
+     *
+     * @return the input stream
+     */
+    public InputStream asInputStream() {
+        return new SegmentInputStream(segments.toArray(new byte[segments.size()][]), count);
+    }
+
+    /**
+     * Discards all written bytes, keeping only the first segment
+     */
+    public void reset() {
+        current = segments.get(0);
+        segments.clear();
+        segments.add(current);
+        position = 0;
+        count = 0;
+    }
+
+    /**
+     * @return the number of written bytes
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the maximum number of bytes
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * @return a copy of the written bytes
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[count];
+        int offset = 0;
+        for (byte[] segment : segments) {
+            int n = Math.min(count - offset, segment.length);
+            System.arraycopy(segment, 0, bytes, offset, n);
+            offset += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * @param charset the charset to decode with
+     * @return the written bytes decoded with the charset
+     */
+    public String toString(Charset charset) {
+        if (segments.size() == 1) {
+            return new String(current, 0, count, charset);
+        }
+        return new String(toByteArray(), charset);
+    }
+
+    @Override
+    public String toString() {
+        return format("SegmentedBoundedByteArrayOutputStream.of(%s, %s segments, %s limit)",
+                count, segments.size(), limit);
+    }
+
+    private void nextSegment() {
+        current = new byte[Math.min(Math.min(current.length << 1, MAX_SEGMENT_SIZE), limit - count)];
+        segments.add(current);
+        position = 0;
+    }
+
+    private static final class SegmentInputStream extends InputStream {
+
+        private final byte[][] segments;
+        private int remaining;
+        private int segment;
+        private int position;
+
+        SegmentInputStream(byte[][] segments, int count) {
+            this.segments = segments;
+            this.remaining = count;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+            nextSegmentIfExhausted();
+            remaining--;
+            return segments[segment][position++] & 0xff;
+        }
+
+        @Override
+        public int read(@Nonnull byte[] bytes, int offset, int length) {
+            if (offset < 0 || length < 0 || length > bytes.length - offset) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (length == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = 0;
+            while (read < length && remaining > 0) {
+                nextSegmentIfExhausted();
+                int n = Math.min(Math.min(length - read, remaining), segments[segment].length - position);
+                System.arraycopy(segments[segment], position, bytes, offset + read, n);
+                position += n;
+                remaining -= n;
+                read += n;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = 0;
+            while (skipped < n && remaining > 0) {
+                nextSegmentIfExhausted();
+                int step = (int) Math.min(Math.min(n - skipped, remaining), segments[segment].length - position);
+                position += step;
+                remaining -= step;
+                skipped += step;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return remaining;
+        }
+
+        private void nextSegmentIfExhausted() {
+            if (position == segments[segment].length) {
+                segment++;
+                position = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+import com.google.common.io.ByteStreams;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A bounded output stream that keeps the data in memory up to a threshold,
+ * and then transparently spills it to a temporary file.
+ * <p>
+ * The limit semantics are the same as {@link BoundedByteArrayOutputStream}, the hard limit is enforced
+ * for the memory and the file alike. The content is read back with {@link #asInputStream()}
+ * or {@link #transferTo(WritableByteChannel)}, which stream the file and never load it on heap.
+ * </p>
+ * <b>Not thread-safe</b>, the stream is meant to have a single writer and <b>must</b> be closed
+ * to delete the temporary file.
+ */
+@Beta
+public class SpillingBoundedOutputStream extends OutputStream {
+
+    private static final int STAGING_SIZE = 8192;
+
+    private final int threshold;
+    private final long limit;
+    private final File directory;
+
+    private UnsynchronizedBoundedByteArrayOutputStream memory;
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private ByteBuffer staging;
+    private long count;
+    private boolean closed;
+
+    /**
+     * @param threshold the number of bytes kept in memory before spilling
+     * @param limit     the maximum number of bytes
+     */
+    public SpillingBoundedOutputStream(int threshold, long limit) {
+        this(threshold, limit, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param threshold the number of bytes kept in memory before spilling
+     * @param limit     the maximum number of bytes
+     * @param directory the directory of the temporary file
+     */
+    public SpillingBoundedOutputStream(int threshold, long limit, File directory) {
+        checkArgument(threshold > 0, format("Invalid threshold: %s > 0", threshold));
+        checkArgument(limit >= threshold, format("Invalid limit: %s >= %s", limit, threshold));
+        checkArgument(directory != null, "Expected non-null directory");
+        this.threshold = threshold;
+        this.limit = limit;
+        this.directory = directory;
+        this.memory = new UnsynchronizedBoundedByteArrayOutputStream(Math.min(threshold, 32), threshold);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count >= limit) {
+            throw new IllegalArgumentException(format("Reached the limit of the buffer (%s >= %s)", count, limit));
+        }
+        checkOpen();
+        if (memory != null) {
+            if (count < threshold) {
+                memory.write(b);
+                count++;
+                return;
+            }
+            spill();
+        }
+        if (!staging.hasRemaining()) {
+            flush();
+        }
+        staging.put((byte) b);
+        count++;
+    }
+
+    @Override
+    public void write(@Nonnull byte[] bytes) throws IOException {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] bytes, int offset, int length) throws IOException {
+        if ((offset < 0) || (offset > bytes.length)) {
+            throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+        }
+        if ((length < 0) || ((offset + length) > bytes.length) || ((offset + length) < 0)) {
+            throw new IndexOutOfBoundsException("Invalid length: " + length);
+        }
+        if (length == 0) {
+            return;
+        }
+
+        long newSize = count + length;
+        if (newSize > limit) {
+            throw new IllegalArgumentException(format("Reached the buffer limit (%s > %s)", newSize, limit));
+        }
+        checkOpen();
+        if (memory != null) {
+            if (newSize <= threshold) {
+                memory.write(bytes, offset, length);
+                count = newSize;
+                return;
+            }
+            spill();
+        }
+        if (length <= staging.remaining()) {
+            staging.put(bytes, offset, length);
+        } else {
+            flush();
+            if (length < staging.capacity()) {
+                staging.put(bytes, offset, length);
+            } else {
+                writeFully(ByteBuffer.wrap(bytes, offset, length));
+            }
+        }
+        count = newSize;
+    }
+
+    /**
+     * Writes the staged bytes to the temporary file, if the stream has spilled
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        if (staging != null && staging.position() > 0) {
+            staging.flip();
+            writeFully(staging);
+            staging.clear();
+        }
+    }
+
+    /**
+     * @return true if the content has been spilled to the temporary file
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return the temporary file or null if the stream hasn't spilled
+     */
+    @Nullable
+    public File file() {
+        return file;
+    }
+
+    /**
+     * @return the number of written bytes
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @return the maximum number of bytes
+     */
+    public long limit() {
+        return limit;
+    }
+
+    /**
+     * Returns an input stream over the bytes written so far, reading the temporary file if the stream has spilled.
+     * <p>
+     * The input stream <b>must</b> be closed and <b>must not</b> be used after this stream is closed.
+     * </p>
+     *
+     * @return the input stream
+     * @throws IOException if an I/O error occurs
+     */
+    public InputStream asInputStream() throws IOException {
+        checkOpen();
+        if (memory != null) {
+            return new ByteArrayInputStream(memory.buffer(), 0, memory.size());
+        }
+        flush();
+        return ByteStreams.limit(new FileInputStream(file), count);
+    }
+
+    /**
+     * Writes the complete contents of this stream to the blocking channel,
+     * with {@link FileChannel#transferTo(long, long, WritableByteChannel)} if the stream has spilled
+     *
+     * @param target the channel to write to
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    public long transferTo(@WillNotClose WritableByteChannel target) throws IOException {
+        checkArgument(target != null, "Expected non-null target");
+        checkOpen();
+        if (memory != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(memory.buffer(), 0, memory.size());
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            return count;
+        }
+        flush();
+        long position = 0;
+        while (position < count) {
+            position += channel.transferTo(position, count - position, target);
+        }
+        return count;
+    }
+
+    /**
+     * Writes the complete contents of this stream to the output stream
+     *
+     * @param out the output stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(@WillNotClose OutputStream out) throws IOException {
+        checkArgument(out != null, "Expected non-null out");
+        if (memory != null) {
+            memory.writeTo(out);
+        } else {
+            transferTo(Channels.newChannel(out));
+        }
+    }
+
+    /**
+     * Closes and deletes the temporary file, closing an already closed stream has no effect
+     *
+     * @throws IOException if the temporary file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        memory = null;
+        staging = null;
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } finally {
+                if (!file.delete() && file.exists()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("SpillingBoundedOutputStream.of(%s, %s threshold, %s limit%s)",
+                count, threshold, limit, isSpilled() ? ", spilled" : "");
+    }
+
+    private void spill() throws IOException {
+        file = File.createTempFile("spill-", ".tmp", directory);
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+            writeFully(ByteBuffer.wrap(memory.buffer(), 0, memory.size()));
+        } catch (IOException e) {
+            Closeables.closeQuietly(randomAccessFile);
+            file.delete();
+            file = null;
+            randomAccessFile = null;
+            channel = null;
+            throw e;
+        }
+        memory = null;
+        staging = ByteBuffer.allocate(STAGING_SIZE);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Stream closed");
+        }
+    }
+}
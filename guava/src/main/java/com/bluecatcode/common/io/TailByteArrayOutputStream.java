@@ -0,0 +1,148 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * An output stream that retains only the most recent {@code limit} bytes, e.g. to capture the tail
+ * of a process output or a diagnostic log.
+ * <p>
+ * Unlike {@link BoundedByteArrayOutputStream} it never fails on overflow, the oldest bytes are overwritten instead.
+ * The buffer is a fixed ring allocated once, writes are O(1) per byte and never grow it.
+ * </p>
+ *
+ * @see BoundedByteArrayOutputStream
+ */
+@Beta
+public class TailByteArrayOutputStream extends OutputStream {
+
+    private final byte[] ring;
+    private int head;
+    private long written;
+
+    /**
+     * @param limit the number of most recent bytes to retain
+     */
+    public TailByteArrayOutputStream(int limit) {
+        checkArgument(limit > 0, format("Invalid limit: %s > 0", limit));
+        this.ring = new byte[limit];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        ring[head] = (byte) b;
+        if (++head == ring.length) {
+            head = 0;
+        }
+        written++;
+    }
+
+    @Override
+    public synchronized void write(@Nonnull byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public synchronized void write(@Nonnull byte[] bytes, int offset, int length) {
+        if ((offset < 0) || (offset > bytes.length)) {
+            throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+        }
+        if ((length < 0) || ((offset + length) > bytes.length) || ((offset + length) < 0)) {
+            throw new IndexOutOfBoundsException("Invalid length: " + length);
+        }
+        written += length;
+        if (length >= ring.length) {
+            // only the last limit bytes survive
+            System.arraycopy(bytes, offset + length - ring.length, ring, 0, ring.length);
+            head = 0;
+            return;
+        }
+        int first = Math.min(length, ring.length - head);
+        System.arraycopy(bytes, offset, ring, head, first);
+        System.arraycopy(bytes, offset + first, ring, 0, length - first);
+        head = (head + length) % ring.length;
+    }
+
+    /**
+     * Writes the retained bytes, oldest first, to the output stream without copying
+     *
+     * @param out the output stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void writeTo(@WillNotClose OutputStream out) throws IOException {
+        if (written >= ring.length) {
+            out.write(ring, head, ring.length - head);
+        }
+        out.write(ring, 0, head);
+    }
+
+    /**
+     * @return the retained bytes, oldest first, in a single new array
+     */
+    public synchronized byte[] toByteArray() {
+        int size = size();
+        byte[] bytes = new byte[size];
+        int start = (head - size + ring.length) % ring.length;
+        int first = Math.min(size, ring.length - start);
+        System.arraycopy(ring, start, bytes, 0, first);
+        System.arraycopy(ring, 0, bytes, first, size - first);
+        return bytes;
+    }
+
+    /**
+     * @param charset the charset to decode with
+     * @return the retained bytes decoded with the charset
+     */
+    public String toString(Charset charset) {
+        return new String(toByteArray(), charset);
+    }
+
+    /**
+     * Discards all retained bytes
+     */
+    public synchronized void reset() {
+        head = 0;
+        written = 0;
+    }
+
+    /**
+     * @return the number of retained bytes
+     */
+    public synchronized int size() {
+        return (int) Math.min(written, ring.length);
+    }
+
+    /**
+     * @return the number of bytes written since creation or the last reset
+     */
+    public synchronized long written() {
+        return written;
+    }
+
+    /**
+     * @return the number of bytes overwritten
+     */
+    public synchronized long discarded() {
+        return written - size();
+    }
+
+    /**
+     * @return the number of most recent bytes retained
+     */
+    public int limit() {
+        return ring.length;
+    }
+
+    @Override
+    public String toString() {
+        return format("TailByteArrayOutputStream.of(%s, %s limit, %s discarded)", size(), limit(), discarded());
+    }
+}
@@ -0,0 +1,200 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.annotations.Beta;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A bounded output stream with the limit semantics of {@link BoundedByteArrayOutputStream},
+ * but without synchronization, for buffers with a single writer.
+ * <p>
+ * <b>Not thread-safe</b>, use {@link BoundedByteArrayOutputStream} if the stream is shared between threads.
+ * </p>
+ * The internal buffer is available without copying through {@link #buffer()} and {@link #size()},
+ * and it never grows beyond the limit.
+ *
+ * @see BoundedByteArrayOutputStream
+ */
+@Beta
+public class UnsynchronizedBoundedByteArrayOutputStream extends OutputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int limit;
+    private byte[] buffer;
+    private int count;
+
+    public UnsynchronizedBoundedByteArrayOutputStream(int limit) {
+        this(32, limit);
+    }
+
+    public UnsynchronizedBoundedByteArrayOutputStream(int capacity, int limit) {
+        checkArgument(capacity > 0, format("Invalid capacity: %s > 0", capacity));
+        checkArgument(limit > 0, format("Invalid limit: %s > 0", limit));
+        this.buffer = new byte[Math.min(capacity, limit)];
+        this.limit = limit;
+    }
+
+    UnsynchronizedBoundedByteArrayOutputStream(byte[] buffer, int limit) {
+        checkArgument(limit > 0, format("Invalid limit: %s > 0", limit));
+        this.buffer = buffer;
+        this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) {
+        if (count >= limit) {
+            throw new IllegalArgumentException(format("Reached the limit of the buffer (%s >= %s)", count, limit));
+        }
+        if (count == buffer.length) {
+            grow(count + 1);
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(@Nonnull byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] bytes, int offset, int length) {
+        if ((offset < 0) || (offset > bytes.length)) {
+            throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+        }
+        if ((length < 0) || ((offset + length) > bytes.length) || ((offset + length) < 0)) {
+            throw new IndexOutOfBoundsException("Invalid length: " + length);
+        }
+        if (length == 0) {
+            return;
+        }
+
+        int newSize = count + length;
+        if (newSize > limit || newSize < 0) {
+            throw new IllegalArgumentException(format("Reached the buffer limit (%s > %s)", newSize, limit));
+        }
+        if (newSize > buffer.length) {
+            grow(newSize);
+        }
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count = newSize;
+    }
+
+    /**
+     * Writes the complete contents of this stream to the output stream
+     *
+     * @param out the output stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(@WillNotClose OutputStream out) throws IOException {
+        out.write(buffer, 0, count);
+    }
+
+    /**
+     * Discards all written bytes, keeping the allocated buffer
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * @return the number of written bytes, the valid length of {@link #buffer()}
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the maximum number of bytes
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Returns the internal buffer without copying, only the first {@link #size()} bytes are valid.
+     * <p>
+     * The buffer is replaced when the stream grows, so it must be obtained again after every write.
+     * </p>
+     *
+     * @return the internal buffer
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return a copy of the written bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * @param charset the charset to decode with
+     * @return the written bytes decoded with the charset
+     */
+    public String toString(Charset charset) {
+        return new String(buffer, 0, count, charset);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, count);
+    }
+
+    /**
+     * Reads directly into the free capacity of the internal buffer, which must not be full
+     *
+     * @param in the input stream to read from
+     * @return the number of bytes read, or -1 at the end of the stream
+     * @throws IOException if an I/O error occurs
+     */
+    int readFrom(InputStream in) throws IOException {
+        int n = in.read(buffer, count, buffer.length - count);
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    /**
+     * Takes the internal buffer away from this stream, discarding all written bytes
+     *
+     * @return the internal buffer
+     */
+    byte[] detach() {
+        byte[] detached = buffer;
+        buffer = EMPTY;
+        count = 0;
+        return detached;
+    }
+
+    /**
+     * @param minCapacity the required capacity
+     * @return the capacity to grow the internal buffer to, doubling it up to the limit
+     */
+    int newCapacity(int minCapacity) {
+        int newCapacity = buffer.length << 1;
+        if (newCapacity < minCapacity) {
+            newCapacity = minCapacity;
+        }
+        if (newCapacity > limit || newCapacity < 0) {
+            newCapacity = limit;
+        }
+        return newCapacity;
+    }
+
+    private void grow(int minCapacity) {
+        buffer = Arrays.copyOf(buffer, newCapacity(minCapacity));
+    }
+}
@@ -12,6 +12,24 @@
  * <li>{@link com.bluecatcode.common.io.Resources}
  * <li>{@link com.bluecatcode.common.io.Closeables}
  * <li>{@link com.bluecatcode.common.io.BoundedByteArrayOutputStream}
+ * <li>{@link com.bluecatcode.common.io.UnsynchronizedBoundedByteArrayOutputStream}
+ * <li>{@link com.bluecatcode.common.io.SegmentedBoundedByteArrayOutputStream}
+ * <li>{@link com.bluecatcode.common.io.BoundedBufferPool}
+ * <li>{@link com.bluecatcode.common.io.DirectBoundedOutputStream}
+ * <li>{@link com.bluecatcode.common.io.SpillingBoundedOutputStream}
+ * <li>{@link com.bluecatcode.common.io.TailByteArrayOutputStream}
+ * <li>{@link com.bluecatcode.common.io.BoundedInputStream}
+ * <li>{@link com.bluecatcode.common.io.LineView}
+ * <li>{@link com.bluecatcode.common.io.LinePipeline}
+ * <li>{@link com.bluecatcode.common.io.FileFollower}
+ * <li>{@link com.bluecatcode.common.io.GroupCommitAppender}
+ * <li>{@link com.bluecatcode.common.io.PropertiesCache}
+ * <li>{@link com.bluecatcode.common.io.FileValidationReport}
+ * <li>{@link com.bluecatcode.common.io.DirectoryLineProcessor}
+ * <li>{@link com.bluecatcode.common.io.DelimitedReader}
+ * <li>{@link com.bluecatcode.common.io.DelimitedRecord}
+ * <li>{@link com.bluecatcode.common.io.FieldView}
+ * <li>{@link com.bluecatcode.common.io.LineIndex}
  * </ul>
  *
  * @see com.google.common.io
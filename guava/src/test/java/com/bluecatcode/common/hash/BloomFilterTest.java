@@ -0,0 +1,88 @@
+package com.bluecatcode.common.hash;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class BloomFilterTest {
+
+    private static final int INSERTIONS = 10000;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldContainAllPutElements() throws Exception {
+        // given
+        BloomFilter filter = BloomFilter.create(INSERTIONS, 0.01);
+
+        // when
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put("event-" + i);
+        }
+
+        // then
+        for (int i = 0; i < INSERTIONS; i++) {
+            assertThat(filter.mightContain("event-" + i), is(true));
+        }
+    }
+
+    @Test
+    public void shouldKeepFalsePositiveProbability() throws Exception {
+        // given
+        BloomFilter filter = BloomFilter.create(INSERTIONS, 0.01);
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put("event-" + i);
+        }
+
+        // when
+        int falsePositives = 0;
+        for (int i = INSERTIONS; i < INSERTIONS * 2; i++) {
+            falsePositives += filter.mightContain("event-" + i) ? 1 : 0;
+        }
+
+        // then
+        assertThat(falsePositives, is(lessThan(INSERTIONS / 50)));
+        assertThat(filter.expectedFpp(), is(lessThan(0.02)));
+    }
+
+    @Test
+    public void shouldMergeAndSerialize() throws Exception {
+        // given
+        BloomFilter left = BloomFilter.create(INSERTIONS, 0.01);
+        BloomFilter right = BloomFilter.create(INSERTIONS, 0.01);
+        left.put("left");
+        right.put("right");
+
+        // when
+        left.merge(right);
+        BloomFilter copy = BloomFilter.fromByteArray(left.toByteArray());
+
+        // then
+        assertThat(copy.mightContain("left"), is(true));
+        assertThat(copy.mightContain("right"), is(true));
+        assertThat(copy.bitCount(), is(left.bitCount()));
+        assertThat(copy.hashFunctions(), is(left.hashFunctions()));
+    }
+
+    @Test
+    public void shouldRejectIncompatibleMerge() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+
+        // when
+        BloomFilter.create(INSERTIONS, 0.01).merge(BloomFilter.create(INSERTIONS * 2, 0.01));
+    }
+
+    @Test
+    public void shouldRejectTruncatedBytes() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+
+        // when
+        BloomFilter.fromByteArray(new byte[]{1, 0, 0});
+    }
+}
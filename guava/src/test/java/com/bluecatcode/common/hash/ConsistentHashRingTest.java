@@ -0,0 +1,104 @@
+package com.bluecatcode.common.hash;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 10000;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldFailOnEmptyRing() throws Exception {
+        // given
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(16);
+
+        // expect
+        exception.expect(IllegalStateException.class);
+
+        // when
+        ring.get("key");
+    }
+
+    @Test
+    public void shouldNotDependOnInsertionOrder() throws Exception {
+        // given
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(16);
+        ConsistentHashRing<String> reversed = new ConsistentHashRing<>(16);
+        for (int i = 0; i < 10; i++) {
+            ring.add("node-" + i);
+            reversed.add("node-" + (9 - i));
+        }
+
+        // expect
+        for (int i = 0; i < KEYS; i++) {
+            assertThat(ring.get("key-" + i), is(reversed.get("key-" + i)));
+        }
+    }
+
+    @Test
+    public void shouldBalanceKeys() throws Exception {
+        // given
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(160);
+        for (int i = 0; i < 10; i++) {
+            ring.add("node-" + i);
+        }
+
+        // when
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            String node = ring.get("key-" + i);
+            counts.put(node, counts.containsKey(node) ? counts.get(node) + 1 : 1);
+        }
+
+        // then
+        assertThat(counts.size(), is(10));
+        for (int count : counts.values()) {
+            assertThat(count, is(both(greaterThan(KEYS / 20)).and(lessThan(KEYS / 5))));
+        }
+    }
+
+    @Test
+    public void shouldMoveOnlyKeysOfChangedNode() throws Exception {
+        // given
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(160);
+        for (int i = 0; i < 10; i++) {
+            ring.add("node-" + i);
+        }
+        String[] before = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            before[i] = ring.get("key-" + i);
+        }
+
+        // when
+        ring.add("node-10");
+
+        // then
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String after = ring.get("key-" + i);
+            if (!after.equals(before[i])) {
+                assertThat(after, is("node-10"));
+                moved++;
+            }
+        }
+        assertThat(moved, is(both(greaterThan(0)).and(lessThan(KEYS / 5))));
+
+        // and when
+        ring.remove("node-10");
+
+        // then
+        for (int i = 0; i < KEYS; i++) {
+            assertThat(ring.get("key-" + i), is(before[i]));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.bluecatcode.common.hash;
+
+import com.bluecatcode.common.functions.Consumer;
+import com.google.common.hash.Hashing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+/**
+ * Throughput of {@link ContentDefinedChunker} in bytes per second,
+ * for boundary detection alone and with chunk digests.
+ */
+@State(Scope.Benchmark)
+public class ContentDefinedChunkerBenchmark {
+
+    private static final int SIZE = 64 << 20;
+
+    private byte[] content;
+    private ByteBuffer heap;
+    private ByteBuffer direct;
+    private ContentDefinedChunker sha256;
+    private ContentDefinedChunker murmur3;
+
+    @Setup
+    public void setUp() {
+        content = new byte[SIZE];
+        new Random(0).nextBytes(content);
+        heap = ByteBuffer.wrap(content);
+        direct = ByteBuffer.allocateDirect(SIZE);
+        direct.put(content).flip();
+        sha256 = ContentDefinedChunker.create(8192);
+        murmur3 = new ContentDefinedChunker(2048, 8192, 65536, Hashing.murmur3_128());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int boundariesHeap() {
+        return boundaries(heap.duplicate());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int boundariesDirect() {
+        return boundaries(direct.duplicate());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long chunkWithSha256(Blackhole blackhole) throws IOException {
+        return chunk(sha256, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long chunkWithMurmur3(Blackhole blackhole) throws IOException {
+        return chunk(murmur3, blackhole);
+    }
+
+    private int boundaries(ByteBuffer buffer) {
+        int chunks = 0;
+        while (buffer.hasRemaining()) {
+            buffer.position(buffer.position() + sha256.nextChunkLength(buffer));
+            chunks++;
+        }
+        return chunks;
+    }
+
+    private long chunk(ContentDefinedChunker chunker, final Blackhole blackhole) throws IOException {
+        return chunker.chunk(Channels.newChannel(new ByteArrayInputStream(content)),
+                new Consumer<ContentDefinedChunker.Chunk>() {
+                    @Override
+                    public void accept(ContentDefinedChunker.Chunk chunk) {
+                        blackhole.consume(chunk);
+                    }
+                });
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ContentDefinedChunkerBenchmark.class.getSimpleName())
+                .forks(1)
+                .build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.bluecatcode.common.hash;
+
+import com.bluecatcode.common.functions.Consumer;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ContentDefinedChunkerTest {
+
+    @ClassRule
+    public static TemporaryFolder tmp = new TemporaryFolder();
+
+    private final ContentDefinedChunker chunker = ContentDefinedChunker.create(4096);
+
+    @Test
+    public void shouldCoverContentWithBoundedChunks() throws Exception {
+        // given
+        byte[] content = random(1 << 20, 1);
+
+        // when
+        List<ContentDefinedChunker.Chunk> chunks = chunks(content);
+
+        // then
+        long offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            ContentDefinedChunker.Chunk chunk = chunks.get(i);
+            assertThat(chunk.offset(), is(offset));
+            assertThat(chunk.length(), is(lessThanOrEqualTo(4096 * 8)));
+            if (i < chunks.size() - 1) {
+                assertThat(chunk.length(), is(greaterThan(1024)));
+            }
+            assertThat(chunk.digest(), is(Hashing.sha256().hashBytes(content, (int) offset, chunk.length())));
+            offset += chunk.length();
+        }
+        assertThat(offset, is((long) content.length));
+        assertThat(chunks.size(), is(both(greaterThan(128)).and(lessThan(512))));
+    }
+
+    @Test
+    public void shouldChunkMappedFileLikeChannel() throws Exception {
+        // given
+        byte[] content = random(1 << 20, 2);
+        File file = tmp.newFile("content.bin");
+        com.google.common.io.Files.write(content, file);
+        final List<ContentDefinedChunker.Chunk> mapped = new ArrayList<>();
+
+        // when
+        long count = chunker.chunk(file, new Consumer<ContentDefinedChunker.Chunk>() {
+            @Override
+            public void accept(ContentDefinedChunker.Chunk chunk) {
+                mapped.add(chunk);
+            }
+        });
+
+        // then
+        assertThat(count, is((long) mapped.size()));
+        assertThat(mapped, is(chunks(content)));
+    }
+
+    @Test
+    public void shouldKeepMostChunksAfterInsertion() throws Exception {
+        // given
+        byte[] content = random(1 << 20, 3);
+        byte[] edited = Bytes.concat(new byte[]{42}, content);
+        Set<HashCode> original = new HashSet<>();
+        for (ContentDefinedChunker.Chunk chunk : chunks(content)) {
+            original.add(chunk.digest());
+        }
+
+        // when
+        List<ContentDefinedChunker.Chunk> chunks = chunks(edited);
+
+        // then
+        int changed = 0;
+        for (ContentDefinedChunker.Chunk chunk : chunks) {
+            changed += original.contains(chunk.digest()) ? 0 : 1;
+        }
+        assertThat(changed, is(lessThanOrEqualTo(2)));
+    }
+
+    private List<ContentDefinedChunker.Chunk> chunks(byte[] content) throws Exception {
+        final List<ContentDefinedChunker.Chunk> chunks = new ArrayList<>();
+        chunker.chunk(Channels.newChannel(new ByteArrayInputStream(content)),
+                new Consumer<ContentDefinedChunker.Chunk>() {
+                    @Override
+                    public void accept(ContentDefinedChunker.Chunk chunk) {
+                        chunks.add(chunk);
+                    }
+                });
+        return chunks;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,61 @@
+package com.bluecatcode.common.hash;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CountMinSketchTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldNeverUnderestimate() throws Exception {
+        // given
+        CountMinSketch sketch = CountMinSketch.create(0.001, 0.99);
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("event-" + i, i);
+        }
+
+        // then
+        long total = sketch.totalCount();
+        for (int i = 0; i < 1000; i++) {
+            long estimate = sketch.estimateCount("event-" + i);
+            assertThat(estimate, is(greaterThanOrEqualTo((long) i)));
+            assertThat(estimate, is(lessThanOrEqualTo(i + total / 100)));
+        }
+    }
+
+    @Test
+    public void shouldMergeAndSerialize() throws Exception {
+        // given
+        CountMinSketch left = new CountMinSketch(4, 1024);
+        CountMinSketch right = new CountMinSketch(4, 1024);
+        left.add("shared", 3);
+        right.add("shared", 4);
+
+        // when
+        left.merge(right);
+        CountMinSketch copy = CountMinSketch.fromByteArray(left.toByteArray());
+
+        // then
+        assertThat(copy.estimateCount("shared"), is(7L));
+        assertThat(copy.totalCount(), is(7L));
+        assertThat(copy.depth(), is(4));
+        assertThat(copy.width(), is(1024));
+    }
+
+    @Test
+    public void shouldRejectIncompatibleMerge() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+
+        // when
+        new CountMinSketch(4, 1024).merge(new CountMinSketch(4, 512));
+    }
+}
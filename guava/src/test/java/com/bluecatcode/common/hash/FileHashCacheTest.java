@@ -0,0 +1,113 @@
+package com.bluecatcode.common.hash;
+
+import com.google.common.hash.Hashing;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static com.bluecatcode.common.hash.Hash.sha256AsString;
+import static com.google.common.base.Charsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FileHashCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldHashOnceForUnchangedFile() throws Exception {
+        // given
+        File file = tmp.newFile("hello.txt");
+        com.google.common.io.Files.write("Hello world", file, UTF_8);
+        FileHashCache cache = new FileHashCache(Hashing.sha256(), 10);
+
+        // when
+        String first = cache.hashAsString(file);
+        String second = cache.hashAsString(file);
+
+        // then
+        assertThat(first, is(sha256AsString("Hello world")));
+        assertThat(second, is(first));
+        assertThat(cache.stats().missCount(), is(1L));
+        assertThat(cache.stats().hitCount(), is(1L));
+    }
+
+    @Test
+    public void shouldRehashChangedFile() throws Exception {
+        // given
+        File file = tmp.newFile("changed.txt");
+        com.google.common.io.Files.write("Hello world", file, UTF_8);
+        FileHashCache cache = new FileHashCache(Hashing.sha256(), 10);
+        cache.hash(file);
+
+        // when
+        com.google.common.io.Files.write("Hello world, again", file, UTF_8);
+        String changed = cache.hashAsString(file);
+
+        // then
+        assertThat(changed, is(sha256AsString("Hello world, again")));
+        assertThat(cache.stats().missCount(), is(2L));
+    }
+
+    @Test
+    public void shouldEvictBeyondMaximumSize() throws Exception {
+        // given
+        FileHashCache cache = new FileHashCache(Hashing.sha256(), 2);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            File file = tmp.newFile("file-" + i);
+            com.google.common.io.Files.write("content " + i, file, UTF_8);
+            cache.hash(file);
+        }
+
+        // then
+        assertThat(cache.size(), is(2L));
+        assertThat(cache.stats().evictionCount(), is(3L));
+    }
+
+    @Test
+    public void shouldStayWarmAfterReload() throws Exception {
+        // given
+        File file = tmp.newFile("warm.txt");
+        com.google.common.io.Files.write("Hello world", file, UTF_8);
+        File index = new File(tmp.getRoot(), "hashes.idx");
+        FileHashCache cache = new FileHashCache(Hashing.sha256(), 10);
+        cache.hash(file);
+        cache.save(index);
+
+        // when
+        FileHashCache restarted = new FileHashCache(Hashing.sha256(), 10);
+        int loaded = restarted.load(index);
+        String hash = restarted.hashAsString(file);
+
+        // then
+        assertThat(loaded, is(1));
+        assertThat(hash, is(sha256AsString("Hello world")));
+        assertThat(restarted.stats().hitCount(), is(1L));
+        assertThat(restarted.stats().missCount(), is(0L));
+    }
+
+    @Test
+    public void shouldRejectIndexOfDifferentFunction() throws Exception {
+        // given
+        File file = tmp.newFile("other.txt");
+        File index = new File(tmp.getRoot(), "md5.idx");
+        FileHashCache cache = new FileHashCache(Hashing.md5(), 10);
+        cache.hash(file);
+        cache.save(index);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+
+        // when
+        new FileHashCache(Hashing.sha256(), 10).load(index);
+    }
+}
@@ -27,4 +27,17 @@ public class HashTest {
     public void testSha512AsString() throws Exception {
         assertThat(sha512AsString("łół"), is("8d73ad158d10ce41ed0ea99e0af77c48b43f1688f27f8a264cbc83d10a5b92969e5c4d1a2db18b6bd0231b502c6d68b3bcc4b33d4be2c08e5ed4b99d73966d69"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testHash64() throws Exception {
+        assertThat(hash64("łół"), is(hash64(new StringBuilder("łół"))));
+        assertThat(hash64("łół") == hash64("łółł"), is(false));
+        assertThat(hash64("") == hash64("\u0000"), is(false));
+    }
+
+    @Test
+    public void testHmacSha256AsString() throws Exception {
+        assertThat(hmacSha256AsString("key", "The quick brown fox jumps over the lazy dog"),
+                is("f7bc83f430538424b13298e6aa6fb143ef4d59a14946175997479dbc2d1a3cd8"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.bluecatcode.common.hash;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class HmacTest {
+
+    // RFC 4231, test case 1
+    private static final String EXPECTED = "b0344c61d8db38535ca8afceaf0bf12b881dc200c9833da726e9376c2e32cff7";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldSign() throws Exception {
+        // given
+        Hmac hmac = Hmac.hmacSha256(key());
+
+        // expect
+        assertThat(hmac.hashAsString("Hi There"), is(EXPECTED));
+        assertThat(hmac.hash("Hi There".getBytes(Charsets.UTF_8)).toString(), is(EXPECTED));
+        assertThat(hmac.hashAsString("Hi There"), is(EXPECTED));
+    }
+
+    @Test
+    public void shouldStreamIntoReusableBuffer() throws Exception {
+        // given
+        Hmac hmac = Hmac.hmacSha256(key());
+        ByteBuffer first = ByteBuffer.wrap("Hi ".getBytes(Charsets.UTF_8));
+        ByteBuffer second = ByteBuffer.allocateDirect(5);
+        second.put("There".getBytes(Charsets.UTF_8)).flip();
+        char[] output = new char[80];
+
+        // when
+        int written = hmac.signer().update(first).update(second).doFinalHex(output, 8);
+
+        // then
+        assertThat(written, is(64));
+        assertThat(new String(output, 8, written), is(EXPECTED));
+    }
+
+    @Test
+    public void shouldSignConcurrently() throws Exception {
+        // given
+        final Hmac hmac = Hmac.hmacSha256(key());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        Future<?>[] futures = new Future<?>[4];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int j = 0; j < 1000; j++) {
+                        assertThat(hmac.hashAsString("Hi There"), is(EXPECTED));
+                    }
+                    return null;
+                }
+            });
+        }
+
+        // then
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldRejectUnknownAlgorithm() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+
+        // when
+        new Hmac("HmacUnknown", key());
+    }
+
+    private static byte[] key() {
+        byte[] key = new byte[20];
+        Arrays.fill(key, (byte) 0x0b);
+        return key;
+    }
+}
@@ -0,0 +1,93 @@
+package com.bluecatcode.common.hash;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HyperLogLogTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldEstimateSmallCardinality() throws Exception {
+        // given
+        HyperLogLog hll = new HyperLogLog(14);
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            hll.add("event-" + i);
+            hll.add("event-" + i);
+        }
+
+        // then
+        assertThat(hll.cardinality(), is(both(greaterThan(97L)).and(lessThan(103L))));
+    }
+
+    @Test
+    public void shouldEstimateCardinalityConcurrently() throws Exception {
+        // given
+        final HyperLogLog hll = new HyperLogLog(14);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // when
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 250000; i++) {
+                        hll.add("event-" + (thread * 125000 + i));
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // then, 625000 distinct elements with about 0.8% standard error
+        assertThat(hll.cardinality(), is(both(greaterThan(600000L)).and(lessThan(650000L))));
+    }
+
+    @Test
+    public void shouldMergeAndSerialize() throws Exception {
+        // given
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        for (int i = 0; i < 10000; i++) {
+            left.add("event-" + i);
+            right.add("event-" + (i + 5000));
+        }
+
+        // when
+        left.merge(right);
+        HyperLogLog copy = HyperLogLog.fromByteArray(left.toByteArray());
+
+        // then
+        assertThat(copy.cardinality(), is(left.cardinality()));
+        assertThat(copy.cardinality(), is(both(greaterThan(14000L)).and(lessThan(16000L))));
+    }
+
+    @Test
+    public void shouldRejectInvalidPrecision() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+
+        // when
+        new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+    }
+}
@@ -0,0 +1,128 @@
+package com.bluecatcode.common.hash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static java.lang.String.format;
+
+/**
+ * Lookup throughput of {@link ConsistentHashRing} and {@link RendezvousHash} compared to {@code hash % n}.
+ * <p>
+ * Run with {@code main}, which also prints the fraction of keys moved when a node joins.
+ * </p>
+ */
+@State(Scope.Benchmark)
+public class NodeSelectionBenchmark {
+
+    private static final int KEYS = 1 << 12;
+
+    @Param({"4", "16", "64"})
+    private int nodes;
+
+    private String[] keys;
+    private long[] keyHashes;
+    private ConsistentHashRing<String> ring;
+    private RendezvousHash<String> rendezvous;
+
+    @Setup
+    public void setUp() {
+        keys = new String[KEYS];
+        keyHashes = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "key-" + i;
+            keyHashes[i] = Hash.hash64(keys[i]);
+        }
+        ring = new ConsistentHashRing<>(160);
+        rendezvous = new RendezvousHash<>();
+        for (int i = 0; i < nodes; i++) {
+            ring.add("node-" + i);
+            rendezvous.add("node-" + i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int moduloMd5() {
+        int dummy = 0;
+        for (String key : keys) {
+            dummy += (Hash.md5AsString(key).hashCode() & Integer.MAX_VALUE) % nodes;
+        }
+        return dummy;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int ringLookup() {
+        int dummy = 0;
+        for (long keyHash : keyHashes) {
+            dummy += ring.get(keyHash).length();
+        }
+        return dummy;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int ringLookupWithKeyHashing() {
+        int dummy = 0;
+        for (String key : keys) {
+            dummy += ring.get(key).length();
+        }
+        return dummy;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int rendezvousLookup() {
+        int dummy = 0;
+        for (long keyHash : keyHashes) {
+            dummy += rendezvous.get(keyHash).length();
+        }
+        return dummy;
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int size : new int[]{4, 16, 64}) {
+            printKeyMovement(size, 1 << 16);
+        }
+        new Runner(new OptionsBuilder()
+                .include(NodeSelectionBenchmark.class.getSimpleName())
+                .forks(1)
+                .build()).run();
+    }
+
+    private static void printKeyMovement(int size, int keys) {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(160);
+        RendezvousHash<String> rendezvous = new RendezvousHash<>();
+        for (int i = 0; i < size; i++) {
+            ring.add("node-" + i);
+            rendezvous.add("node-" + i);
+        }
+        String[] ringBefore = new String[keys];
+        String[] rendezvousBefore = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            ringBefore[i] = ring.get("key-" + i);
+            rendezvousBefore[i] = rendezvous.get("key-" + i);
+        }
+
+        ring.add("node-" + size);
+        rendezvous.add("node-" + size);
+
+        int ringMoved = 0, rendezvousMoved = 0, moduloMoved = 0;
+        for (int i = 0; i < keys; i++) {
+            String key = "key-" + i;
+            ringMoved += ring.get(key).equals(ringBefore[i]) ? 0 : 1;
+            rendezvousMoved += rendezvous.get(key).equals(rendezvousBefore[i]) ? 0 : 1;
+            int hash = Hash.md5AsString(key).hashCode() & Integer.MAX_VALUE;
+            moduloMoved += (hash % size) == (hash % (size + 1)) ? 0 : 1;
+        }
+        System.out.println(format("%d -> %d nodes, keys moved: ring %.3f, rendezvous %.3f, modulo %.3f, ideal %.3f",
+                size, size + 1, ringMoved / (double) keys, rendezvousMoved / (double) keys,
+                moduloMoved / (double) keys, 1 / (double) (size + 1)));
+    }
+}
@@ -0,0 +1,78 @@
+package com.bluecatcode.common.hash;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class RendezvousHashTest {
+
+    private static final int KEYS = 10000;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void shouldFailWithoutNodes() throws Exception {
+        // given
+        RendezvousHash<String> hash = new RendezvousHash<>();
+
+        // expect
+        exception.expect(IllegalStateException.class);
+
+        // when
+        hash.get("key");
+    }
+
+    @Test
+    public void shouldBalanceKeys() throws Exception {
+        // given
+        RendezvousHash<String> hash = new RendezvousHash<>();
+        for (int i = 0; i < 10; i++) {
+            hash.add("node-" + i);
+        }
+
+        // when
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            String node = hash.get("key-" + i);
+            counts.put(node, counts.containsKey(node) ? counts.get(node) + 1 : 1);
+        }
+
+        // then
+        assertThat(counts.size(), is(10));
+        for (int count : counts.values()) {
+            assertThat(count, is(both(greaterThan(KEYS / 20)).and(lessThan(KEYS / 5))));
+        }
+    }
+
+    @Test
+    public void shouldMoveOnlyKeysOfRemovedNode() throws Exception {
+        // given
+        RendezvousHash<String> hash = new RendezvousHash<>();
+        for (int i = 0; i < 10; i++) {
+            hash.add("node-" + i);
+        }
+        String[] before = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            before[i] = hash.get("key-" + i);
+        }
+
+        // when
+        hash.remove("node-3");
+
+        // then
+        for (int i = 0; i < KEYS; i++) {
+            if (!before[i].equals("node-3")) {
+                assertThat(hash.get("key-" + i), is(before[i]));
+            } else {
+                assertThat(hash.get("key-" + i), is(not("node-3")));
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class BoundedBufferPoolTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void testBufferIsReusedAfterClose() throws Exception {
+        // given
+        BoundedBufferPool pool = new BoundedBufferPool(16, 1024, 1024, 4096);
+        BoundedBufferPool.Buffer first = pool.acquire(100, 1000);
+        byte[] internal = first.buffer();
+        first.write("Hello".getBytes(Charsets.UTF_8));
+
+        // when
+        first.close();
+        BoundedBufferPool.Buffer second = pool.acquire(100, 1000);
+
+        // then
+        assertThat(internal.length, is(128));
+        assertThat(second.buffer(), is(sameInstance(internal)));
+        assertThat(second.size(), is(0));
+        assertThat(pool.hits(), is(1L));
+        assertThat(pool.misses(), is(1L));
+    }
+
+    @Test
+    public void testLimitIsEnforced() throws Exception {
+        // given
+        BoundedBufferPool pool = new BoundedBufferPool(16, 1024, 0, 4096);
+        BoundedBufferPool.Buffer buffer = pool.acquire(64, 10);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the buffer limit"));
+
+        // when
+        buffer.write(new byte[11]);
+    }
+
+    @Test
+    public void testBufferNeverGrowsBeyondTheLimit() throws Exception {
+        // given
+        BoundedBufferPool pool = new BoundedBufferPool(16, 1024, 0, 4096);
+        BoundedBufferPool.Buffer buffer = pool.acquire(16, 100);
+
+        // when
+        buffer.write(new byte[100]);
+
+        // then
+        assertThat(buffer.size(), is(100));
+        assertThat(buffer.buffer().length, is(100));
+    }
+
+    @Test
+    public void testSharedTiersRetainUpToTheCap() throws Exception {
+        // given
+        BoundedBufferPool pool = new BoundedBufferPool(16, 1024, 0, 2048);
+        BoundedBufferPool.Buffer[] buffers = new BoundedBufferPool.Buffer[3];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(1024, 1024);
+        }
+
+        // when
+        for (BoundedBufferPool.Buffer buffer : buffers) {
+            buffer.close();
+        }
+
+        // then
+        assertThat(pool.retainedBytes(), is(2048L));
+        assertThat(pool.drops(), is(1L));
+        pool.acquire(1024, 1024);
+        assertThat(pool.retainedBytes(), is(1024L));
+    }
+
+    @Test
+    public void testOversizedRequestsAreNotPooled() throws Exception {
+        // given
+        BoundedBufferPool pool = new BoundedBufferPool(16, 1024, 1024, 4096);
+
+        // when
+        BoundedBufferPool.Buffer buffer = pool.acquire(5000, 5000);
+        buffer.close();
+
+        // then
+        assertThat(buffer.size(), is(0));
+        assertThat(pool.misses(), is(1L));
+        assertThat(pool.drops(), is(1L));
+        assertThat(pool.retainedBytes(), is(0L));
+    }
+
+    @Test
+    public void testCloseIsIdempotent() throws Exception {
+        // given
+        BoundedBufferPool pool = new BoundedBufferPool(16, 1024, 0, 4096);
+        BoundedBufferPool.Buffer buffer = pool.acquire(16, 16);
+
+        // when
+        buffer.close();
+        buffer.close();
+
+        // then
+        assertThat(pool.retainedBytes(), is(16L));
+    }
+
+    @Test
+    public void testConcurrentAcquireAndRelease() throws Exception {
+        // given
+        final BoundedBufferPool pool = new BoundedBufferPool(16, 1024, 64, 8192);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Callable<Void> task = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for (int i = 0; i < 1000; i++) {
+                    try (BoundedBufferPool.Buffer buffer = pool.acquire(16 << (i % 7), 1024)) {
+                        buffer.write(new byte[i % 1024]);
+                    }
+                }
+                return null;
+            }
+        };
+
+        // when
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(task);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(pool.hits() + pool.misses(), is(4000L));
+        assertThat(pool.retainedBytes(), lessThanOrEqualTo(8192L));
+    }
+}
@@ -0,0 +1,93 @@
+package com.bluecatcode.common.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Write throughput of {@link BoundedByteArrayOutputStream} and {@link UnsynchronizedBoundedByteArrayOutputStream}
+ * compared to {@link ByteArrayOutputStream}, in bytes per second.
+ */
+@State(Scope.Thread)
+public class BoundedByteArrayOutputStreamBenchmark {
+
+    private static final int SIZE = 1 << 16;
+
+    @Param({"1", "64", "4096"})
+    private int chunk;
+
+    private byte[] bytes;
+    private ByteArrayOutputStream plain;
+    private BoundedByteArrayOutputStream bounded;
+    private UnsynchronizedBoundedByteArrayOutputStream unsynchronized;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[chunk];
+        plain = new ByteArrayOutputStream(SIZE);
+        bounded = new BoundedByteArrayOutputStream(SIZE, SIZE);
+        unsynchronized = new UnsynchronizedBoundedByteArrayOutputStream(SIZE, SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int plain() {
+        plain.reset();
+        if (chunk == 1) {
+            for (int i = 0; i < SIZE; i++) {
+                plain.write(i);
+            }
+        } else {
+            for (int i = 0; i < SIZE; i += chunk) {
+                plain.write(bytes, 0, chunk);
+            }
+        }
+        return plain.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int bounded() {
+        bounded.reset();
+        if (chunk == 1) {
+            for (int i = 0; i < SIZE; i++) {
+                bounded.write(i);
+            }
+        } else {
+            for (int i = 0; i < SIZE; i += chunk) {
+                bounded.write(bytes, 0, chunk);
+            }
+        }
+        return bounded.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int unsynchronized() {
+        unsynchronized.reset();
+        if (chunk == 1) {
+            for (int i = 0; i < SIZE; i++) {
+                unsynchronized.write(i);
+            }
+        } else {
+            for (int i = 0; i < SIZE; i += chunk) {
+                unsynchronized.write(bytes, 0, chunk);
+            }
+        }
+        return unsynchronized.size();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(BoundedByteArrayOutputStreamBenchmark.class.getSimpleName())
+                .forks(1)
+                .build()).run();
+    }
+}
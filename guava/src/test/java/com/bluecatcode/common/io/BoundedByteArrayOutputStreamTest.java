@@ -15,6 +15,8 @@ import org.junit.runner.RunWith;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -96,6 +98,98 @@ public class BoundedByteArrayOutputStreamTest {
         }
     }
 
+    @Test
+    public void testToStringDecodesInternalBuffer() throws IOException {
+        // given
+        BoundedByteArrayOutputStream stream = new BoundedByteArrayOutputStream(64);
+        stream.write("zażółć gęślą jaźń".getBytes(Charsets.UTF_8));
+
+        // expect
+        assertThat(stream.toString(Charsets.UTF_8), is("zażółć gęślą jaźń"));
+    }
+
+    @Test
+    public void testToStringPrefixLeavesOutCutCharacter() throws IOException {
+        // given
+        BoundedByteArrayOutputStream stream = new BoundedByteArrayOutputStream(64);
+        stream.write("abcż".getBytes(Charsets.UTF_8));
+
+        // expect
+        assertThat(stream.toString(Charsets.UTF_8, 4), is("abc"));
+        assertThat(stream.toString(Charsets.UTF_8, 5), is("abcż"));
+        assertThat(stream.toString(Charsets.UTF_8, 100), is("abcż"));
+        assertThat(stream.toString(Charsets.UTF_8, 0), is(""));
+    }
+
+    @Test
+    public void testToStringLatin1() throws IOException {
+        // given
+        BoundedByteArrayOutputStream stream = new BoundedByteArrayOutputStream(64);
+        stream.write(new byte[]{'a', (byte) 0xe9, (byte) 0xff});
+
+        // expect
+        assertThat(stream.toString(Charsets.ISO_8859_1, 2), is("a\u00e9"));
+        assertThat(stream.toString(Charsets.ISO_8859_1), is("a\u00e9\u00ff"));
+    }
+
+    @Test
+    public void testMalformedInputIsReplaced() throws IOException {
+        // given
+        BoundedByteArrayOutputStream stream = new BoundedByteArrayOutputStream(64);
+        stream.write(new byte[]{'a', (byte) 0xff, 'b'});
+
+        // expect
+        assertThat(stream.decodeTo(Charsets.UTF_8, new StringBuilder()).toString(), is("a\ufffdb"));
+        assertThat(stream.decodeTo(Charsets.US_ASCII, new StringBuilder()).toString(), is("a\ufffdb"));
+    }
+
+    @Test
+    public void testDecodeToCharBuffer() throws IOException {
+        // given
+        BoundedByteArrayOutputStream stream = new BoundedByteArrayOutputStream(64);
+        stream.write("Hello World".getBytes(Charsets.UTF_8));
+        CharBuffer target = CharBuffer.allocate(5);
+
+        // when
+        int decoded = stream.decodeTo(Charsets.UTF_8, target);
+
+        // then
+        assertThat(decoded, is(5));
+        target.flip();
+        assertThat(target.toString(), is("Hello"));
+    }
+
+    @Test
+    public void testDecodeToAppendable() throws IOException {
+        // given
+        String text = RandomStringUtils.random(3000);
+        BoundedByteArrayOutputStream stream = new BoundedByteArrayOutputStream(20000);
+        stream.write(text.getBytes(Charsets.UTF_8));
+
+        // when
+        StringWriter writer = stream.decodeTo(Charsets.UTF_8, new StringWriter());
+
+        // then
+        assertThat(writer.toString(), is(text));
+    }
+
+    @Test
+    public void testDecodeToAppendableWithStatefulCharset() throws IOException {
+        // given
+        String text = RandomStringUtils.random(3000);
+        BoundedByteArrayOutputStream stream = new BoundedByteArrayOutputStream(20000);
+        stream.write(new byte[]{(byte) 0xff, (byte) 0xfe});
+        stream.write(text.getBytes(Charsets.UTF_16LE));
+        byte[] bytes = stream.toByteArray();
+
+        // when
+        StringBuilder builder = stream.decodeTo(Charsets.UTF_16, new StringBuilder());
+
+        // then
+        assertThat(builder.toString(), is(new String(bytes, Charsets.UTF_16)));
+        assertThat(builder.toString(), is(text));
+    }
+
     private void runComparison(BoundedByteArrayOutputStream aos, DataOutputStream dos,
                                ByteArrayOutputStream bos) throws IOException {
         Random r = new Random();
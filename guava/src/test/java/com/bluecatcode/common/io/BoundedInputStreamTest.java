@@ -0,0 +1,161 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedInputStreamTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void testReadsUpToTheLimit() throws Exception {
+        // given
+        byte[] expected = randomBytes(100);
+        BoundedInputStream in = new BoundedInputStream(new ByteArrayInputStream(expected), 100);
+
+        // when
+        byte[] actual = ByteStreams.toByteArray(in);
+
+        // then
+        assertTrue(Arrays.equals(actual, expected));
+        assertThat(in.count(), is(100L));
+    }
+
+    @Test
+    public void testFailsPastTheLimit() throws Exception {
+        // given
+        BoundedInputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[101]), 100);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the limit of the stream"));
+
+        // when
+        ByteStreams.toByteArray(in);
+    }
+
+    @Test
+    public void testReadAllBytesWithExactHintDoesNotCopy() throws Exception {
+        // given
+        byte[] expected = randomBytes(1000);
+        BoundedInputStream in = new BoundedInputStream(trickle(expected), 5000);
+
+        // when
+        byte[] actual = in.readAllBytes(1000);
+
+        // then
+        assertThat(actual.length, is(1000));
+        assertTrue(Arrays.equals(actual, expected));
+    }
+
+    @Test
+    public void testReadAllBytesWithWrongHint() throws Exception {
+        // given
+        byte[] expected = randomBytes(1000);
+
+        // expect
+        assertTrue(Arrays.equals(new BoundedInputStream(trickle(expected), 5000).readAllBytes(10), expected));
+        assertTrue(Arrays.equals(new BoundedInputStream(trickle(expected), 5000).readAllBytes(4000), expected));
+        assertTrue(Arrays.equals(new BoundedInputStream(trickle(expected), 5000).readAllBytes(), expected));
+    }
+
+    @Test
+    public void testReadAllBytesFailsFastOnHint() throws Exception {
+        // given
+        BoundedInputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[10]), 100);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Expected length exceeds the limit"));
+
+        // when
+        in.readAllBytes(101);
+    }
+
+    @Test
+    public void testReadAllBytesFailsPastTheLimit() throws Exception {
+        // given
+        BoundedInputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[101]), 100);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the limit of the stream"));
+
+        // when
+        in.readAllBytes(100);
+    }
+
+    @Test
+    public void testReadAllBytesIntoPooledBuffer() throws Exception {
+        // given
+        BoundedBufferPool pool = new BoundedBufferPool(16, 1 << 16, 0, 1 << 20);
+        byte[] expected = randomBytes(20000);
+
+        // when
+        try (BoundedBufferPool.Buffer buffer = new BoundedInputStream(trickle(expected), 1 << 15).readAllBytes(pool)) {
+
+            // then
+            assertTrue(Arrays.equals(buffer.toByteArray(), expected));
+        }
+        assertThat(pool.retainedBytes() > 0, is(true));
+    }
+
+    @Test
+    public void testPooledBufferIsReturnedOnFailure() throws Exception {
+        // given
+        BoundedBufferPool pool = new BoundedBufferPool(16, 1 << 16, 0, 1 << 20);
+        BoundedInputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[200]), 100);
+
+        // when
+        try {
+            in.readAllBytes(pool);
+        } catch (IllegalArgumentException expected) {
+            // then
+            assertThat(pool.retainedBytes() > 0, is(true));
+            return;
+        }
+        throw new AssertionError("Expected IllegalArgumentException");
+    }
+
+    @Test
+    public void testSkipIsBounded() throws Exception {
+        // given
+        BoundedInputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[100]), 10);
+
+        // expect
+        assertThat(in.skip(50), is(10L));
+        assertThat(in.available(), is(0));
+    }
+
+    private static InputStream trickle(byte[] bytes) {
+        // a stream returning short reads and no available() estimate
+        InputStream first = new ByteArrayInputStream(bytes, 0, bytes.length / 3);
+        InputStream second = new ByteArrayInputStream(bytes, bytes.length / 3, bytes.length - bytes.length / 3);
+        return new SequenceInputStream(first, second) {
+            @Override
+            public int available() {
+                return 0;
+            }
+        };
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
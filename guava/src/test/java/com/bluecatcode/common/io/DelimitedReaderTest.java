@@ -0,0 +1,130 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class DelimitedReaderTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSplitsFields() throws Exception {
+        // when
+        DelimitedRecord record = DelimitedReader.csv().parse("a,,bc,");
+
+        // then
+        assertThat(record.size(), is(4));
+        assertThat(record.field(0).toString(), is("a"));
+        assertThat(record.field(1).length(), is(0));
+        assertThat(record.field(2).toString(), is("bc"));
+        assertThat(record.field(2).offset(), is(3));
+        assertThat(record.field(3).length(), is(0));
+    }
+
+    @Test
+    public void testSplitsQuotedFields() throws Exception {
+        // when
+        DelimitedRecord record = DelimitedReader.csv().parse("\"a,b\",\"say \"\"hi\"\"\",\"\",c");
+
+        // then
+        assertThat(record.size(), is(4));
+        assertThat(record.field(0).toString(), is("a,b"));
+        assertThat(record.field(0).isQuoted(), is(true));
+        assertThat(record.field(0).offset(), is(1));
+        assertThat(record.field(1).toString(), is("say \"hi\""));
+        assertThat(record.field(1).contentEquals("say \"hi\""), is(true));
+        assertThat(record.field(2).toString(), is(""));
+        assertThat(record.field(3).toString(), is("c"));
+        assertThat(record.field(3).isQuoted(), is(false));
+    }
+
+    @Test
+    public void testSplitsOnMultiCharacterDelimiters() throws Exception {
+        // when
+        DelimitedRecord record = new DelimitedReader("::", DelimitedReader.NO_QUOTE).parse("a:b::c::");
+
+        // then
+        assertThat(record.toString(), is("DelimitedRecord.of('a:b', 'c', '')"));
+    }
+
+    @Test
+    public void testSplitsEmptyLineIntoOneField() throws Exception {
+        // when
+        DelimitedRecord record = DelimitedReader.tsv().parse("");
+
+        // then
+        assertThat(record.size(), is(1));
+        assertThat(record.field(0).length(), is(0));
+    }
+
+    @Test
+    public void testReusesTheRecordAndViews() throws Exception {
+        // given
+        DelimitedReader reader = DelimitedReader.csv();
+        DelimitedRecord first = reader.parse("a,b");
+        FieldView field = first.field(1);
+
+        // when
+        DelimitedRecord second = reader.parse("c,d,e");
+
+        // then
+        assertThat(second, sameInstance(first));
+        assertThat(second.field(1), sameInstance(field));
+        assertThat(field.toString(), is("d"));
+    }
+
+    @Test
+    public void testReadsRecordsOfFile() throws Exception {
+        // given
+        File file = temporaryFolder.newFile();
+        com.google.common.io.Files.write("alice,30,\"1,000\"\nbob,-7,2\n", file, Charsets.UTF_8);
+        List<String> names = new ArrayList<>();
+        long[] total = new long[1];
+
+        // when
+        long records = DelimitedReader.csv().read(file, Charsets.UTF_8, record -> {
+            names.add(record.field(0).toString());
+            total[0] += record.field(1).parseInt();
+        });
+
+        // then
+        assertThat(records, is(2L));
+        assertThat(names.toString(), is("[alice, bob]"));
+        assertThat(total[0], is(23L));
+    }
+
+    @Test
+    public void testRejectsUnclosedQuotes() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Unclosed quote in field 1");
+
+        // when
+        DelimitedReader.csv().parse("a,\"b");
+    }
+
+    @Test
+    public void testRejectsCharactersAfterTheClosingQuote() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Expected a delimiter after the quoted field 0");
+
+        // when
+        DelimitedReader.csv().parse("\"a\"b,c");
+    }
+}
@@ -0,0 +1,170 @@
+package com.bluecatcode.common.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class DirectBoundedOutputStreamTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final DirectBoundedOutputStream.SlabPool pool = new DirectBoundedOutputStream.SlabPool(64, 4);
+
+    @Test
+    public void testWriteBound() throws Exception {
+        // given
+        DirectBoundedOutputStream stream = new DirectBoundedOutputStream(1, pool);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the limit of the buffer"));
+
+        // when
+        stream.write(1);
+        stream.write(1);
+    }
+
+    @Test
+    public void testWriteArrayBound() throws Exception {
+        // given
+        DirectBoundedOutputStream stream = new DirectBoundedOutputStream(32, pool);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the buffer limit"));
+
+        // when
+        stream.write(new byte[60], 0, 60);
+    }
+
+    @Test
+    public void testWritingAcrossSlabs() throws Exception {
+        // given
+        DirectBoundedOutputStream stream = new DirectBoundedOutputStream(1000, pool);
+        byte[] expected = randomBytes(300);
+
+        // when
+        stream.write(expected[0]);
+        stream.write(expected, 1, 100);
+        stream.write(ByteBuffer.wrap(expected, 101, 150));
+        for (int i = 251; i < 300; i++) {
+            stream.write(expected[i]);
+        }
+
+        // then
+        assertThat(stream.size(), is(300));
+        assertThat(stream.readViews().length, is(5));
+        assertTrue(Arrays.equals(stream.toByteArray(), expected));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stream.writeTo(out);
+        assertTrue(Arrays.equals(out.toByteArray(), expected));
+    }
+
+    @Test
+    public void testReadViewsAreFlipped() throws Exception {
+        // given
+        DirectBoundedOutputStream stream = new DirectBoundedOutputStream(1000, pool);
+        stream.write(randomBytes(100));
+
+        // when
+        ByteBuffer[] views = stream.readViews();
+
+        // then
+        assertThat(views[0].isDirect(), is(true));
+        assertThat(views[0].position(), is(0));
+        assertThat(views[0].limit(), is(64));
+        assertThat(views[1].limit(), is(36));
+    }
+
+    @Test
+    public void testWriteToChannel() throws Exception {
+        // given
+        DirectBoundedOutputStream stream = new DirectBoundedOutputStream(1000, pool);
+        byte[] expected = randomBytes(1000);
+        stream.write(expected);
+        File file = temporaryFolder.newFile();
+
+        // when
+        long written;
+        try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+            written = stream.writeTo(channel);
+        }
+
+        // then
+        assertThat(written, is(1000L));
+        assertTrue(Arrays.equals(com.google.common.io.Files.toByteArray(file), expected));
+    }
+
+    @Test
+    public void testCloseReturnsSlabsToPool() throws Exception {
+        // given
+        DirectBoundedOutputStream stream = new DirectBoundedOutputStream(1000, pool);
+        stream.write(new byte[200]);
+
+        // when
+        stream.close();
+        stream.close();
+        DirectBoundedOutputStream next = new DirectBoundedOutputStream(1000, pool);
+        next.write(new byte[200]);
+
+        // then
+        assertThat(pool.allocatedSlabs(), is(4L));
+        assertThat(pool.retainedSlabs(), is(0));
+        next.close();
+        assertThat(pool.retainedSlabs(), is(4));
+    }
+
+    @Test
+    public void testWriteAfterClose() throws Exception {
+        // given
+        DirectBoundedOutputStream stream = new DirectBoundedOutputStream(1000, pool);
+        stream.close();
+
+        // expect
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Stream closed");
+
+        // when
+        stream.write(1);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        // given
+        DirectBoundedOutputStream stream = new DirectBoundedOutputStream(1000, pool);
+        stream.write(new byte[200]);
+
+        // when
+        stream.reset();
+        stream.write(new byte[]{1, 2, 3});
+
+        // then
+        assertThat(stream.size(), is(3));
+        assertThat(pool.retainedSlabs(), is(3));
+        assertTrue(Arrays.equals(stream.toByteArray(), new byte[]{1, 2, 3}));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,146 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DirectoryLineProcessorTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testConsumesTheMatchingFilesOfTheTree() throws Exception {
+        // given
+        File root = temporaryFolder.getRoot();
+        write(new File(root, "app.log"), 3);
+        write(new File(root, "app.log.1"), 5);
+        write(new File(root, "nested/deeper/web.log"), 7);
+        write(new File(root, "nested/notes.txt"), 11);
+        ConcurrentLinkedQueue<String> lines = new ConcurrentLinkedQueue<>();
+        Map<String, Long> completed = new ConcurrentHashMap<>();
+
+        // when
+        DirectoryLineProcessor.Stats stats = new DirectoryLineProcessor(2).run(root, "**/*.log{,.*}",
+                Charsets.UTF_8, lines::add, (file, count) -> completed.put(file.getName(), count));
+
+        // then
+        assertThat(stats.files(), is(3L));
+        assertThat(stats.lines(), is(15L));
+        assertThat(lines.size(), is(15));
+        assertThat(completed.get("app.log"), is(3L));
+        assertThat(completed.get("app.log.1"), is(5L));
+        assertThat(completed.get("web.log"), is(7L));
+        assertThat(completed.containsKey("notes.txt"), is(false));
+    }
+
+    @Test
+    public void testSchedulesTheLargestFilesFirst() throws Exception {
+        // given
+        File root = temporaryFolder.getRoot();
+        write(new File(root, "small.log"), 1);
+        write(new File(root, "large.log"), 100);
+        write(new File(root, "medium.log"), 10);
+        List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+
+        // when
+        new DirectoryLineProcessor(1).run(root, "*.log", Charsets.UTF_8, line -> {
+        }, (file, count) -> completed.add(file.getName()));
+
+        // then
+        assertThat(completed.toString(), is("[large.log, medium.log, small.log]"));
+    }
+
+    @Test
+    public void testRethrowsConsumerFailures() throws Exception {
+        // given
+        File root = temporaryFolder.getRoot();
+        write(new File(root, "app.log"), 3);
+
+        // expect
+        exception.expect(IllegalStateException.class);
+
+        // when
+        Files.consumeLinesInTree(root, "*.log", Charsets.UTF_8, line -> {
+            throw new IllegalArgumentException(line);
+        }, 2);
+    }
+
+    @Test
+    public void testDoesntCompleteFilesStoppedByAFailure() throws Exception {
+        // given
+        File root = temporaryFolder.getRoot();
+        write(new File(root, "bad.log"), 1);
+        write(new File(root, "slow.log"), 100);
+        List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+
+        // when
+        try {
+            new DirectoryLineProcessor(2).run(root, "*.log", Charsets.UTF_8, line -> {
+                if (line.startsWith("bad.log")) {
+                    sleepUninterruptibly(20, TimeUnit.MILLISECONDS);
+                    throw new IllegalArgumentException(line);
+                }
+                sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }, (file, count) -> completed.add(file.getName()));
+            fail("Expected a failure");
+        } catch (IllegalStateException expected) {
+            // the stopped worker finishes its current line
+            sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+        }
+
+        // then
+        assertThat(completed.toString(), is("[]"));
+    }
+
+    @Test
+    public void testTranslatesGlobs() throws Exception {
+        // expect
+        assertThat(DirectoryLineProcessor.globToPattern("*.log").matcher("a.log").matches(), is(true));
+        assertThat(DirectoryLineProcessor.globToPattern("*.log").matcher("dir/a.log").matches(), is(false));
+        assertThat(DirectoryLineProcessor.globToPattern("**/*.log").matcher("a.log").matches(), is(true));
+        assertThat(DirectoryLineProcessor.globToPattern("**/*.log").matcher("a/b/c.log").matches(), is(true));
+        assertThat(DirectoryLineProcessor.globToPattern("app.log.?").matcher("app.log.7").matches(), is(true));
+        assertThat(DirectoryLineProcessor.globToPattern("*.{gz,zip}").matcher("a.zip").matches(), is(true));
+        assertThat(DirectoryLineProcessor.globToPattern("[!a]*").matcher("abc").matches(), is(false));
+        assertThat(DirectoryLineProcessor.globToPattern("a+b(c)").matcher("a+b(c)").matches(), is(true));
+    }
+
+    @Test
+    public void testRejectsUnclosedGroups() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Unclosed group or class");
+
+        // when
+        DirectoryLineProcessor.globToPattern("*.{gz");
+    }
+
+    private static void write(File file, int lines) throws Exception {
+        com.google.common.io.Files.createParentDirs(file);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append(file.getName()).append(" line ").append(i).append('\n');
+        }
+        com.google.common.io.Files.write(content, file, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FastLineReaderTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void testSplitsLinesLikeBufferedReader() throws Exception {
+        // given
+        byte[] bytes = "one\ntwo\r\nthree\rfour\r\r\n\nlast".getBytes(Charsets.UTF_8);
+
+        // expect
+        for (int bufferSize = 1; bufferSize <= 8; bufferSize++) {
+            assertThat(read(bytes, Charsets.UTF_8, bufferSize), is(expected(bytes, Charsets.UTF_8)));
+        }
+    }
+
+    @Test
+    public void testDecodesMixedLines() throws Exception {
+        // given
+        byte[] bytes = "plain ascii line\nzażółć gęślą jaźń\n中文 and ascii\n😀 emoji\n"
+                .getBytes(Charsets.UTF_8);
+
+        // expect
+        assertThat(read(bytes, Charsets.UTF_8, 3), is(expected(bytes, Charsets.UTF_8)));
+        assertThat(read(bytes, Charsets.UTF_8, 1024), is(expected(bytes, Charsets.UTF_8)));
+    }
+
+    @Test
+    public void testReplacesMalformedInputLikeInputStreamReader() throws Exception {
+        // given
+        byte[] bytes = {'a', (byte) 0xe2, '\n', (byte) 0xc3, (byte) 0xa9, (byte) 0xff, 'b', (byte) 0xc3};
+
+        // expect
+        assertThat(read(bytes, Charsets.UTF_8, 1024), is(expected(bytes, Charsets.UTF_8)));
+        assertThat(read(bytes, Charsets.US_ASCII, 1024), is(expected(bytes, Charsets.US_ASCII)));
+        assertThat(read(bytes, Charsets.ISO_8859_1, 1024), is(expected(bytes, Charsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void testReadsRandomInputLikeBufferedReader() throws Exception {
+        // given
+        Random random = new Random(42);
+        String alphabet = "abcdefghij \t\r\néł中";
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        byte[] bytes = content.toString().getBytes(Charsets.UTF_8);
+
+        // expect
+        assertThat(read(bytes, Charsets.UTF_8, 7), is(expected(bytes, Charsets.UTF_8)));
+    }
+
+    @Test
+    public void testRejectsUnsupportedCharsets() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Unsupported charset");
+
+        // when
+        new FastLineReader(new ByteArrayInputStream(new byte[0]), Charsets.UTF_16);
+    }
+
+    private static List<String> read(byte[] bytes, Charset charset, int bufferSize) throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (FastLineReader reader = new FastLineReader(new ByteArrayInputStream(bytes), charset, bufferSize)) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static List<String> expected(byte[] bytes, Charset charset) throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), charset))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,93 @@
+package com.bluecatcode.common.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FieldViewTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void testParsesLongs() throws Exception {
+        // expect
+        assertThat(field("0").parseLong(), is(0L));
+        assertThat(field("+42").parseLong(), is(42L));
+        assertThat(field("-42").parseLong(), is(-42L));
+        assertThat(field("9223372036854775807").parseLong(), is(Long.MAX_VALUE));
+        assertThat(field("-9223372036854775808").parseLong(), is(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testParsesInts() throws Exception {
+        // expect
+        assertThat(field("2147483647").parseInt(), is(Integer.MAX_VALUE));
+        assertThat(field("-2147483648").parseInt(), is(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void testParsesTheViewOnly() throws Exception {
+        // given
+        FieldView field = DelimitedReader.csv().parse("x,123,y").field(1);
+
+        // expect
+        assertThat(field.parseLong(), is(123L));
+    }
+
+    @Test
+    public void testRejectsLongOverflow() throws Exception {
+        // expect
+        exception.expect(NumberFormatException.class);
+        exception.expectMessage("9223372036854775808");
+
+        // when
+        field("9223372036854775808").parseLong();
+    }
+
+    @Test
+    public void testRejectsIntOverflow() throws Exception {
+        // expect
+        exception.expect(NumberFormatException.class);
+
+        // when
+        field("2147483648").parseInt();
+    }
+
+    @Test
+    public void testRejectsNonDigits() throws Exception {
+        // expect
+        exception.expect(NumberFormatException.class);
+        exception.expectMessage("For input string: \"12a\"");
+
+        // when
+        field("12a").parseLong();
+    }
+
+    @Test
+    public void testRejectsSignOnly() throws Exception {
+        // expect
+        exception.expect(NumberFormatException.class);
+
+        // when
+        field("-").parseLong();
+    }
+
+    @Test
+    public void testRejectsEmptyField() throws Exception {
+        // expect
+        exception.expect(NumberFormatException.class);
+
+        // when
+        field("").parseLong();
+    }
+
+    private static FieldView field(String value) {
+        FieldView field = new FieldView();
+        field.set(value, 0, value.length(), false);
+        return field;
+    }
+}
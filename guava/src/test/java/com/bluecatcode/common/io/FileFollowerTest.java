@@ -0,0 +1,171 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FileFollowerTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testConsumesOnlyAppendedCompleteLines() throws Exception {
+        // given
+        File file = temporaryFolder.newFile("app.log");
+        FileFollower follower = new FileFollower(file, Charsets.UTF_8, new File(temporaryFolder.getRoot(), "app.checkpoint"));
+        List<String> lines = new ArrayList<>();
+
+        // when
+        append(file, "one\r\ntwo\nthr");
+        long first = follower.poll(lines::add);
+        append(file, "ee\n");
+        long second = follower.poll(lines::add);
+        long third = follower.poll(lines::add);
+
+        // then
+        assertThat(first, is(2L));
+        assertThat(second, is(1L));
+        assertThat(third, is(0L));
+        assertThat(lines, is(Arrays.asList("one", "two", "three")));
+        assertThat(follower.offset(), is(file.length()));
+    }
+
+    @Test
+    public void testResumesFromTheCheckpoint() throws Exception {
+        // given
+        File file = temporaryFolder.newFile("app.log");
+        File checkpoint = new File(temporaryFolder.getRoot(), "app.checkpoint");
+        append(file, "one\ntwo\n");
+        new FileFollower(file, Charsets.UTF_8, checkpoint).poll(line -> {
+        });
+        append(file, "three\n");
+        List<String> lines = new ArrayList<>();
+
+        // when
+        long consumed = new FileFollower(file, Charsets.UTF_8, checkpoint).poll(lines::add);
+
+        // then
+        assertThat(consumed, is(1L));
+        assertThat(lines, is(Arrays.asList("three")));
+    }
+
+    @Test
+    public void testRestartsAfterTruncation() throws Exception {
+        // given
+        File file = temporaryFolder.newFile("app.log");
+        FileFollower follower = new FileFollower(file, Charsets.UTF_8, new File(temporaryFolder.getRoot(), "app.checkpoint"));
+        append(file, "one\ntwo\nthree\n");
+        follower.poll(line -> {
+        });
+        List<String> lines = new ArrayList<>();
+
+        // when
+        com.google.common.io.Files.write("four\n", file, Charsets.UTF_8);
+        follower.poll(lines::add);
+
+        // then
+        assertThat(lines, is(Arrays.asList("four")));
+    }
+
+    @Test
+    public void testRestartsAfterRotation() throws Exception {
+        // given
+        File file = temporaryFolder.newFile("app.log");
+        FileFollower follower = new FileFollower(file, Charsets.UTF_8, new File(temporaryFolder.getRoot(), "app.checkpoint"));
+        append(file, "one\n");
+        follower.poll(line -> {
+        });
+        List<String> lines = new ArrayList<>();
+
+        // when
+        assertThat(file.delete(), is(true));
+        com.google.common.io.Files.write("rotated\nfile\n", file, Charsets.UTF_8);
+        follower.poll(lines::add);
+
+        // then
+        assertThat(lines, is(Arrays.asList("rotated", "file")));
+    }
+
+    @Test
+    public void testMissingFileHasNoLines() throws Exception {
+        // given
+        File file = new File(temporaryFolder.getRoot(), "missing.log");
+        FileFollower follower = new FileFollower(file, Charsets.UTF_8, new File(temporaryFolder.getRoot(), "app.checkpoint"));
+
+        // when
+        long consumed = follower.poll(line -> {
+        });
+
+        // then
+        assertThat(consumed, is(0L));
+    }
+
+    @Test
+    public void testSavesTheCheckpointOnConsumerFailure() throws Exception {
+        // given
+        File file = temporaryFolder.newFile("app.log");
+        File checkpoint = new File(temporaryFolder.getRoot(), "app.checkpoint");
+        append(file, "one\nbad\nthree\n");
+        try {
+            new FileFollower(file, Charsets.UTF_8, checkpoint).poll(line -> {
+                if (line.equals("bad")) {
+                    throw new IllegalArgumentException(line);
+                }
+            });
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        List<String> lines = new ArrayList<>();
+
+        // when
+        new FileFollower(file, Charsets.UTF_8, checkpoint).poll(lines::add);
+
+        // then
+        assertThat(lines, is(Arrays.asList("bad", "three")));
+    }
+
+    @Test
+    public void testKeepsTheConsumerFailureIfTheCheckpointCantBeSaved() throws Exception {
+        // given
+        File file = temporaryFolder.newFile("app.log");
+        File checkpoint = new File(new File(temporaryFolder.getRoot(), "missing"), "app.checkpoint");
+        append(file, "bad\n");
+
+        // expect
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("bad");
+
+        // when
+        new FileFollower(file, Charsets.UTF_8, checkpoint).poll(line -> {
+            throw new IllegalArgumentException(line);
+        });
+    }
+
+    @Test
+    public void testRejectsMultiByteLineTerminators() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("line terminators must be single bytes");
+
+        // when
+        new FileFollower(temporaryFolder.newFile(), Charsets.UTF_16, temporaryFolder.newFile());
+    }
+
+    private static void append(File file, String content) throws Exception {
+        com.google.common.io.Files.append(content, file, Charsets.UTF_8);
+    }
+}
@@ -6,16 +6,35 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.bluecatcode.hamcrest.Matchers.hasSize;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.spy;
 
@@ -144,4 +163,359 @@ public class FilesTest {
         // when
         Files.getFileAsProperties(file);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldConsumeLinesInParallel() throws Exception {
+        // given
+        File file = tmp.newFile("test-parallel.txt");
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(42);
+        String[] terminators = {"\n", "\r\n", "\r"};
+        for (int i = 0; i < 2000; i++) {
+            content.append("line ").append(i).append(" zażółć");
+            for (int j = random.nextInt(50); j > 0; j--) {
+                content.append('x');
+            }
+            content.append(terminators[random.nextInt(terminators.length)]);
+            if (i % 100 == 0) {
+                content.append('\n');
+            }
+        }
+        content.append("last");
+        Files.write(content, file);
+
+        List<String> expected = new ArrayList<>();
+        Files.consumeLines(file, expected::add);
+        ConcurrentLinkedQueue<String> actual = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        long lines;
+        try {
+            lines = Files.consumeLinesInParallel(file, Charsets.UTF_8, actual::add, executor, 997);
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        List<String> sortedExpected = new ArrayList<>(expected);
+        List<String> sortedActual = new ArrayList<>(actual);
+        Collections.sort(sortedExpected);
+        Collections.sort(sortedActual);
+        assertThat(lines, is((long) expected.size()));
+        assertThat(sortedActual, is(sortedExpected));
+    }
+
+    @Test
+    public void shouldConsumeChunkLinesInOrder() throws Exception {
+        // given
+        File file = tmp.newFile("test-parallel-order.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append(i).append('\n');
+        }
+        Files.write(content, file);
+        List<String> actual = new ArrayList<>();
+
+        // when
+        Files.consumeLinesInParallel(file, Charsets.UTF_8, actual::add, 1);
+
+        // then
+        assertThat(actual.size(), is(1000));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(actual.get(i), is(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void shouldWrapConsumerExceptionsInConsumeLinesInParallel() throws Exception {
+        // given
+        File file = tmp.newFile("test-parallel-failure.txt");
+        Files.write("Hello world\nHello world\n", file);
+
+        // expect
+        exception.expect(IllegalStateException.class);
+
+        // when
+        Files.consumeLinesInParallel(file, Charsets.UTF_8, (s) -> {
+            throw new RuntimeException();
+        }, 2);
+    }
+
+    @Test
+    public void shouldStopAllChunksBeforeFailingInConsumeLinesInParallel() throws Exception {
+        // given
+        File file = tmp.newFile("test-parallel-stop.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append(i).append('\n');
+        }
+        Files.write(content, file);
+        AtomicInteger inFlight = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        try {
+            Files.consumeLinesInParallel(file, Charsets.UTF_8, (s) -> {
+                if (s.equals("0")) {
+                    sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+                    throw new RuntimeException();
+                }
+                inFlight.incrementAndGet();
+                sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+                inFlight.decrementAndGet();
+            }, executor, 1000);
+            fail("Expected a failure");
+        } catch (IllegalStateException expected) {
+            // then
+            assertThat(inFlight.get(), is(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldRejectMultiByteLineTerminators() throws Exception {
+        // given
+        File file = tmp.newFile("test-parallel-utf16.txt");
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Unsupported charset"));
+
+        // when
+        Files.consumeLinesInParallel(file, Charsets.UTF_16, (s) -> {
+        }, 2);
+    }
+
+    @Test
+    public void shouldConsumeLineViews() throws Exception {
+        // given
+        File file = tmp.newFile("test-line-views.txt");
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(7);
+        String[] terminators = {"\n", "\r\n", "\r"};
+        for (int i = 0; i < 500; i++) {
+            content.append(i % 3 == 0 ? "zażółć " : "line ").append(i);
+            content.append(terminators[random.nextInt(terminators.length)]);
+        }
+        content.append("last \uD83D\uDE00");
+        Files.write(content, file);
+
+        List<String> expected = new ArrayList<>();
+        Files.consumeLines(file, expected::add);
+
+        for (int windowSize : new int[]{64, 1000, Integer.MAX_VALUE}) {
+            List<String> actual = new ArrayList<>();
+
+            // when
+            long lines = Files.consumeLineViews(file, (view) -> actual.add(view.toString()), windowSize);
+
+            // then
+            assertThat(lines, is((long) expected.size()));
+            assertThat(actual, is(expected));
+        }
+    }
+
+    @Test
+    public void shouldReportLineViewOffsets() throws Exception {
+        // given
+        File file = tmp.newFile("test-line-view-offsets.txt");
+        Files.write("ab\r\ncd\n\nef", file);
+        List<Long> offsets = new ArrayList<>();
+
+        // when
+        Files.consumeLineViews(file, (view) -> offsets.add(view.offset()));
+
+        // then
+        assertThat(offsets.toString(), is("[0, 4, 7, 8]"));
+    }
+
+    @Test
+    public void shouldFailOnLinesLongerThanTheWindow() throws Exception {
+        // given
+        File file = tmp.newFile("test-line-view-long.txt");
+        Files.write("short\nthis line is too long\n", file);
+
+        // expect
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage(startsWith("Line too long"));
+
+        // when
+        Files.consumeLineViews(file, (view) -> {
+        }, 8);
+    }
+
+    @Test
+    public void shouldWriteCharactersAtomically() throws Exception {
+        // given
+        File file = tmp.newFile("test-atomic-chars.txt");
+        Files.write("old content", file);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            content.append("line ").append(i).append(" \u00e9\u4e2d\n");
+        }
+
+        // when
+        Files.writeAtomically(content, file, Charsets.UTF_8);
+
+        // then
+        assertThat(com.google.common.io.Files.toString(file, Charsets.UTF_8), is(content.toString()));
+        assertThat(file.getParentFile().list((dir, name) -> name.endsWith(".tmp")).length, is(0));
+    }
+
+    @Test
+    public void shouldWriteUtf8CharactersAtomically() throws Exception {
+        // given
+        File file = tmp.newFile("test-atomic-utf8.txt");
+
+        // when
+        Files.writeAtomically("za\u017c\u00f3\u0142\u0107", file);
+
+        // then
+        assertThat(com.google.common.io.Files.toString(file, Charsets.UTF_8), is("za\u017c\u00f3\u0142\u0107"));
+    }
+
+    @Test
+    public void shouldFailTheAtomicWriteIfTheRenameFails() throws Exception {
+        // given
+        File parent = tmp.newFolder("test-atomic-rename");
+        File directory = tmp.newFolder("test-atomic-rename", "destination");
+        tmp.newFile("test-atomic-rename/destination/child.txt");
+
+        // expect
+        exception.expect(IOException.class);
+        exception.expectMessage(startsWith("Can't rename"));
+
+        // when
+        try {
+            Files.writeAtomically("content", directory);
+        } finally {
+            assertThat(new File(directory, "child.txt").isFile(), is(true));
+            assertThat(parent.list((dir, name) -> name.endsWith(".tmp")).length, is(0));
+        }
+    }
+
+    @Test
+    public void shouldWriteBufferAtomically() throws Exception {
+        // given
+        File file = tmp.newFile("test-atomic-buffer.txt");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        buffer.put("0123456789".getBytes(Charsets.US_ASCII)).flip();
+        buffer.position(2);
+
+        // when
+        Files.writeAtomically(buffer, file);
+
+        // then
+        assertThat(com.google.common.io.Files.toString(file, Charsets.US_ASCII), is("23456789"));
+        assertThat(buffer.position(), is(2));
+    }
+
+    @Test
+    public void shouldWriteChannelAtomically() throws Exception {
+        // given
+        File file = tmp.newFile("test-atomic-channel.txt");
+        byte[] bytes = new byte[100000];
+        new Random(42).nextBytes(bytes);
+
+        // when
+        Files.writeAtomically(Channels.newChannel(new ByteArrayInputStream(bytes)), file);
+
+        // then
+        assertThat(Arrays.equals(com.google.common.io.Files.toByteArray(file), bytes), is(true));
+    }
+
+    @Test
+    public void shouldCopyAtomically() throws Exception {
+        // given
+        File from = tmp.newFile("test-atomic-copy-from.txt");
+        File to = tmp.newFile("test-atomic-copy-to.txt");
+        Files.write("copied", from);
+        Files.write("old content", to);
+
+        // when
+        Files.copyAtomically(from, to);
+
+        // then
+        assertThat(com.google.common.io.Files.toString(to, Charsets.UTF_8), is("copied"));
+    }
+
+    @Test
+    public void shouldKeepTheOldContentIfTheAtomicWriteFails() throws Exception {
+        // given
+        File file = tmp.newFile("test-atomic-failure.txt");
+        Files.write("old content", file);
+        ReadableByteChannel failing = Channels.newChannel(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Broken");
+            }
+        });
+
+        // expect
+        exception.expect(IOException.class);
+
+        try {
+            // when
+            Files.writeAtomically(failing, file);
+        } finally {
+            // then
+            assertThat(com.google.common.io.Files.toString(file, Charsets.UTF_8), is("old content"));
+        }
+    }
+
+    @Test
+    public void shouldReportEveryInvalidFile() throws Exception {
+        // given
+        File valid = tmp.newFile("test-validate-valid.txt");
+        File missing = new File(tmp.getRoot(), "test-validate-missing.txt");
+        File directory = tmp.newFolder("test-validate-directory");
+
+        // when
+        FileValidationReport report = Files.validateFiles(Arrays.asList(valid, missing, directory, valid));
+
+        // then
+        assertThat(report.checked(), is(4));
+        assertThat(report.isValid(), is(false));
+        assertThat(report.failures().size(), is(2));
+        assertThat(report.failures().get(0).file(), is(missing));
+        assertThat(report.failures().get(0).problem(), is(FileValidationReport.Problem.MISSING));
+        assertThat(report.failures().get(1).file(), is(directory));
+        assertThat(report.failures().get(1).problem(), is(FileValidationReport.Problem.NOT_A_FILE));
+    }
+
+    @Test
+    public void shouldValidateLargeInputsInParallel() throws Exception {
+        // given
+        File valid = tmp.newFile("test-validate-parallel.txt");
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            files.add(i % 1000 == 999 ? new File(tmp.getRoot(), "test-validate-missing-" + i) : valid);
+        }
+
+        // when
+        FileValidationReport report = Files.validateFiles(files, 4);
+
+        // then
+        assertThat(report.checked(), is(5000));
+        assertThat(report.failures().size(), is(5));
+        for (int i = 0; i < 5; i++) {
+            assertThat(report.failures().get(i).file().getName(), is("test-validate-missing-" + (i * 1000 + 999)));
+        }
+    }
+
+    @Test
+    public void shouldListTheInvalidFilesWhenCheckingTheReport() throws Exception {
+        // given
+        File missing = new File(tmp.getRoot(), "test-validate-check.txt");
+        FileValidationReport report = Files.validateFiles(Collections.singletonList(missing));
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid files: 1 of 1; File doesn't exist: '" + missing + "'");
+
+        // when
+        report.checkValid();
+    }
+}
@@ -0,0 +1,213 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class GroupCommitAppenderTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testAppendsFromConcurrentProducersInBatches() throws Exception {
+        // given
+        File file = temporaryFolder.newFile();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        GroupCommitAppender.Stats stats;
+
+        // when
+        try (final GroupCommitAppender appender = new GroupCommitAppender(file, Charsets.UTF_8, 1024,
+                5, GroupCommitAppender.Fsync.NONE, 0, TimeUnit.MILLISECONDS)) {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int producer = 0; producer < 4; producer++) {
+                final int id = producer;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < 1000; i++) {
+                            appender.append(format(id, i));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            appender.flush();
+            stats = appender.stats();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then
+        List<String> lines = com.google.common.io.Files.readLines(file, Charsets.UTF_8);
+        assertThat(lines.size(), is(4000));
+        List<String> expected = new ArrayList<>();
+        for (int producer = 0; producer < 4; producer++) {
+            for (int i = 0; i < 1000; i++) {
+                expected.add(format(producer, i).trim());
+            }
+        }
+        Collections.sort(lines);
+        Collections.sort(expected);
+        assertThat(lines, is(expected));
+        assertThat(stats.records(), is(4000L));
+        assertThat(stats.bytes(), is(file.length()));
+        assertThat(stats.batches(), lessThan(4000L));
+        assertThat(stats.recordsPerBatch(), greaterThan(1.0));
+    }
+
+    @Test
+    public void testWritesAfterMaxDelay() throws Exception {
+        // given
+        File file = temporaryFolder.newFile();
+
+        try (GroupCommitAppender appender = new GroupCommitAppender(file, Charsets.UTF_8, 1 << 20,
+                10, GroupCommitAppender.Fsync.NONE, 0, TimeUnit.MILLISECONDS)) {
+            // when
+            appender.append("one\n");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (file.length() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            // then
+            assertThat(file.length(), is(4L));
+            assertThat(appender.stats().maxLatency(TimeUnit.MILLISECONDS), greaterThanOrEqualTo(10L));
+        }
+    }
+
+    @Test
+    public void testCommitsBatchesThatDontFitTheNextRecordWithoutDelay() throws Exception {
+        // given
+        File file = temporaryFolder.newFile();
+        long started = System.nanoTime();
+
+        try (GroupCommitAppender appender = new GroupCommitAppender(file, Charsets.UTF_8, 16,
+                1, GroupCommitAppender.Fsync.NONE, 0, TimeUnit.HOURS)) {
+            // when
+            for (int i = 0; i < 10; i++) {
+                appender.append("record " + i + "\n");
+            }
+
+            // then
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started), lessThan(5L));
+            assertThat(appender.stats().batches(), greaterThanOrEqualTo(8L));
+        }
+    }
+
+    @Test
+    public void testFlushForcesWithBatchPolicy() throws Exception {
+        // given
+        File file = temporaryFolder.newFile();
+
+        try (GroupCommitAppender appender = new GroupCommitAppender(file, Charsets.UTF_8, 1 << 20,
+                1, GroupCommitAppender.Fsync.BATCH, 0, TimeUnit.HOURS)) {
+            // when
+            appender.append("one\n");
+            appender.append("two\n");
+            appender.flush();
+
+            // then
+            assertThat(com.google.common.io.Files.toString(file, Charsets.UTF_8), is("one\ntwo\n"));
+            assertThat(appender.stats().syncs(), greaterThanOrEqualTo(1L));
+        }
+    }
+
+    @Test
+    public void testFlushForcesWithIntervalPolicy() throws Exception {
+        // given
+        File file = temporaryFolder.newFile();
+
+        try (GroupCommitAppender appender = new GroupCommitAppender(file, Charsets.UTF_8, 1 << 20,
+                0, GroupCommitAppender.Fsync.INTERVAL, 1, TimeUnit.HOURS)) {
+            // when
+            appender.append("one\n");
+            appender.flush();
+
+            // then
+            assertThat(file.length(), is(4L));
+            assertThat(appender.stats().syncs(), is(1L));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFlushAfterEmptyRecord() throws Exception {
+        for (GroupCommitAppender.Fsync fsync : GroupCommitAppender.Fsync.values()) {
+            // given
+            File file = temporaryFolder.newFile();
+
+            try (GroupCommitAppender appender = new GroupCommitAppender(file, Charsets.UTF_8, 1 << 20,
+                    0, fsync, 1, TimeUnit.HOURS)) {
+                appender.append("x\n");
+                appender.flush();
+
+                // when
+                appender.append("");
+                appender.flush();
+
+                // then
+                assertThat(file.length(), is(2L));
+                assertThat(appender.stats().records(), is(2L));
+            }
+        }
+    }
+
+    @Test
+    public void testCloseWritesRemainingRecords() throws Exception {
+        // given
+        File file = temporaryFolder.newFile();
+        com.google.common.io.Files.write("zero\n", file, Charsets.UTF_8);
+        GroupCommitAppender appender = new GroupCommitAppender(file, Charsets.UTF_8, 1 << 20,
+                1, GroupCommitAppender.Fsync.NONE, 0, TimeUnit.HOURS);
+
+        // when
+        appender.append("one\n");
+        appender.close();
+        appender.close();
+
+        // then
+        assertThat(com.google.common.io.Files.toString(file, Charsets.UTF_8), is("zero\none\n"));
+    }
+
+    @Test
+    public void testAppendAfterCloseFails() throws Exception {
+        // given
+        GroupCommitAppender appender = GroupCommitAppender.create(temporaryFolder.newFile(), Charsets.UTF_8);
+        appender.close();
+
+        // expect
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Appender closed");
+
+        // when
+        appender.append("one\n");
+    }
+
+    private static String format(int producer, int i) {
+        return "producer-" + producer + "-record-" + i + "\n";
+    }
+}
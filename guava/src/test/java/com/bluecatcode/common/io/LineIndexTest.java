@@ -0,0 +1,195 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LineIndexTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadsLineRanges() throws Exception {
+        // given
+        File file = file(numbered(0, 10));
+
+        // when
+        LineIndex index = LineIndex.create(file, Charsets.UTF_8, 3);
+
+        // then
+        assertThat(index.lines(), is(10L));
+        for (int from = 0; from <= 10; from++) {
+            for (int to = from; to <= 10; to++) {
+                assertThat(read(index, from, to), is(numberedList(from, to)));
+            }
+        }
+        assertThat(index.line(7), is("line 7"));
+    }
+
+    @Test
+    public void testStripsCarriageReturnsAndSkipsTheTrailingLine() throws Exception {
+        // given
+        File file = file("zażółć\r\n\r\nlast");
+
+        // when
+        LineIndex index = LineIndex.create(file, Charsets.UTF_8, 1);
+
+        // then
+        assertThat(index.lines(), is(2L));
+        assertThat(index.line(0), is("zażółć"));
+        assertThat(index.line(1), is(""));
+    }
+
+    @Test
+    public void testUpdatesWithAppendedLines() throws Exception {
+        // given
+        File file = file(numbered(0, 5) + "line ");
+        LineIndex index = LineIndex.create(file, Charsets.UTF_8, 2);
+        com.google.common.io.Files.append("5\n" + numbered(6, 9), file, Charsets.UTF_8);
+
+        // when
+        long added = index.update();
+
+        // then
+        assertThat(added, is(4L));
+        assertThat(index.lines(), is(9L));
+        assertThat(read(index, 4, 9), is(numberedList(4, 9)));
+    }
+
+    @Test
+    public void testIndexesAgainAfterTruncation() throws Exception {
+        // given
+        File file = file(numbered(0, 5));
+        LineIndex index = LineIndex.create(file, Charsets.UTF_8, 2);
+        com.google.common.io.Files.write("a\nb\n", file, Charsets.UTF_8);
+
+        // when
+        long added = index.update();
+
+        // then
+        assertThat(added, is(2L));
+        assertThat(read(index, 0, 2).toString(), is("[a, b]"));
+    }
+
+    @Test
+    public void testSavesAndUpdatesTheSidecar() throws Exception {
+        // given
+        File file = file(numbered(0, 7));
+        File sidecar = new File(temporaryFolder.getRoot(), "lines.idx");
+        LineIndex.open(file, Charsets.UTF_8, 3, sidecar);
+        com.google.common.io.Files.append(numbered(7, 11), file, Charsets.UTF_8);
+
+        // when
+        LineIndex index = LineIndex.open(file, Charsets.UTF_8, 3, sidecar);
+
+        // then
+        assertThat(index.lines(), is(11L));
+        assertThat(read(index, 5, 11), is(numberedList(5, 11)));
+        assertThat(LineIndex.open(file, Charsets.UTF_8, 3, sidecar).update(), is(0L));
+    }
+
+    @Test
+    public void testSavesTheSidecarOfATruncatedFile() throws Exception {
+        // given
+        File file = file(numbered(0, 7));
+        File sidecar = new File(temporaryFolder.getRoot(), "lines.idx");
+        LineIndex.open(file, Charsets.UTF_8, 3, sidecar);
+        com.google.common.io.Files.write(new byte[0], file);
+        File expected = new File(temporaryFolder.getRoot(), "expected.idx");
+        LineIndex.create(file, Charsets.UTF_8, 3).save(expected);
+
+        // when
+        LineIndex index = LineIndex.open(file, Charsets.UTF_8, 3, sidecar);
+
+        // then
+        assertThat(index.lines(), is(0L));
+        assertTrue(Arrays.equals(com.google.common.io.Files.toByteArray(sidecar),
+                com.google.common.io.Files.toByteArray(expected)));
+    }
+
+    @Test
+    public void testReplacesTheSidecarOfAnotherInterval() throws Exception {
+        // given
+        File file = file(numbered(0, 7));
+        File sidecar = new File(temporaryFolder.getRoot(), "lines.idx");
+        LineIndex.open(file, Charsets.UTF_8, 3, sidecar);
+
+        // when
+        LineIndex index = LineIndex.open(file, Charsets.UTF_8, 2, sidecar);
+
+        // then
+        assertThat(index.interval(), is(2));
+        assertThat(read(index, 0, 7), is(numberedList(0, 7)));
+    }
+
+    @Test
+    public void testRejectsMalformedSidecar() throws Exception {
+        // given
+        File file = file(numbered(0, 2));
+        File sidecar = file("not an index");
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Malformed line index");
+
+        // when
+        LineIndex.open(file, Charsets.UTF_8, 3, sidecar);
+    }
+
+    @Test
+    public void testRejectsLinesNotIndexed() throws Exception {
+        // given
+        LineIndex index = LineIndex.create(file(numbered(0, 2)), Charsets.UTF_8, 3);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid range: 3 <= 2 lines");
+
+        // when
+        index.line(2);
+    }
+
+    private File file(String content) throws Exception {
+        File file = temporaryFolder.newFile();
+        com.google.common.io.Files.write(content, file, Charsets.UTF_8);
+        return file;
+    }
+
+    private static String numbered(int from, int to) {
+        StringBuilder content = new StringBuilder();
+        for (String line : numberedList(from, to)) {
+            content.append(line).append('\n');
+        }
+        return content.toString();
+    }
+
+    private static List<String> numberedList(int from, int to) {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            lines.add("line " + i);
+        }
+        return lines;
+    }
+
+    private static List<String> read(LineIndex index, long from, long to) {
+        List<String> lines = new ArrayList<>();
+        long consumed = index.readLines(from, to, lines::add);
+        assertThat(consumed, is(to - from));
+        return lines;
+    }
+}
@@ -0,0 +1,128 @@
+package com.bluecatcode.common.io;
+
+import com.bluecatcode.common.functions.Consumer;
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class LinePipelineTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testConsumesAllLinesInBatches() throws Exception {
+        // given
+        File file = lines(10005);
+        ConcurrentLinkedQueue<String> consumed = new ConcurrentLinkedQueue<>();
+        AtomicInteger maxBatch = new AtomicInteger();
+
+        // when
+        LinePipeline.Stats stats = new LinePipeline(100, 4, 3).run(file, Charsets.UTF_8, batch -> {
+            consumed.addAll(batch);
+            maxBatch.set(Math.max(maxBatch.get(), batch.size()));
+        });
+
+        // then
+        assertThat(stats.lines(), is(10005L));
+        assertThat(stats.batches(), is(101L));
+        assertThat(consumed.size(), is(10005));
+        assertThat(maxBatch.get(), lessThanOrEqualTo(100));
+        List<String> sorted = new ArrayList<>(consumed);
+        Collections.sort(sorted);
+        List<String> expected = new ArrayList<>();
+        Files.consumeLines(file, expected::add);
+        Collections.sort(expected);
+        assertThat(sorted, is(expected));
+    }
+
+    @Test
+    public void testBackpressureBlocksTheReader() throws Exception {
+        // given
+        File file = lines(200);
+
+        // when
+        LinePipeline.Stats stats = new LinePipeline(10, 1, 1).run(file, Charsets.UTF_8, batch -> sleep(5));
+
+        // then
+        assertThat(stats.lines(), is(200L));
+        assertThat(stats.readerBlocked(TimeUnit.MILLISECONDS), greaterThan(0L));
+        assertThat(stats.linesPerSecond() > 0, is(true));
+    }
+
+    @Test
+    public void testPropagatesConsumerFailure() throws Exception {
+        // given
+        File file = lines(100000);
+        Consumer<List<String>> consumer = batch -> {
+            throw new IllegalArgumentException("boom");
+        };
+
+        // expect
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("boom");
+
+        // when
+        new LinePipeline(10, 1, 2).run(file, Charsets.UTF_8, consumer);
+    }
+
+    @Test
+    public void testFailsOnMissingFile() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+
+        // when
+        new LinePipeline(10, 1, 2).run(new File(temporaryFolder.getRoot(), "missing"), Charsets.UTF_8, batch -> {
+        });
+    }
+
+    @Test
+    public void testFilesConsumeLineBatches() throws Exception {
+        // given
+        File file = lines(3000);
+        AtomicInteger count = new AtomicInteger();
+
+        // when
+        LinePipeline.Stats stats = Files.consumeLineBatches(file, Charsets.UTF_8, batch -> count.addAndGet(batch.size()), 2);
+
+        // then
+        assertThat(count.get(), is(3000));
+        assertThat(stats.batches(), is(3L));
+    }
+
+    private File lines(int count) throws Exception {
+        File file = temporaryFolder.newFile();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Files.write(content, file);
+        return file;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Random;
+
+/**
+ * Line reading throughput of {@link FastLineReader} compared to {@link BufferedReader} over
+ * an {@link InputStreamReader}, for ASCII and mixed UTF-8 input, in operations (1 MB reads) per second.
+ */
+@State(Scope.Thread)
+public class LineReadingBenchmark {
+
+    private static final int SIZE = 1 << 20;
+
+    @Param({"ascii", "mixed"})
+    private String input;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        String alphabet = input.equals("ascii")
+                ? "abcdefghijklmnopqrstuvwxyz0123456789 ,.;"
+                : "abcdefghijklmnopqrstuvwxyz0123456789 ,.;ąęłó中";
+        Random random = new Random(42);
+        StringBuilder content = new StringBuilder(SIZE);
+        while (content.length() < SIZE) {
+            int length = 20 + random.nextInt(100);
+            for (int i = 0; i < length; i++) {
+                content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            content.append('\n');
+        }
+        bytes = content.toString().getBytes(Charsets.UTF_8);
+    }
+
+    @Benchmark
+    public long bufferedReader() throws IOException {
+        long chars = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(bytes), Charsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                chars += line.length();
+            }
+        }
+        return chars;
+    }
+
+    @Benchmark
+    public long fastLineReader() throws IOException {
+        long chars = 0;
+        try (FastLineReader reader = new FastLineReader(new ByteArrayInputStream(bytes), Charsets.UTF_8)) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                chars += line.length();
+            }
+        }
+        return chars;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(LineReadingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LineViewTest {
+
+    @Test
+    public void testAsciiLine() throws Exception {
+        // given
+        LineView view = view("xHello World".getBytes(Charsets.UTF_8), 1);
+
+        // expect
+        assertThat(view.isAscii(), is(true));
+        assertThat(view.length(), is(11));
+        assertThat(view.charAt(6), is('W'));
+        assertThat(view.startsWith("Hello"), is(true));
+        assertThat(view.startsWith("World"), is(false));
+        assertThat(view.subSequence(6, 11).toString(), is("World"));
+        assertThat(view.toString(), is("Hello World"));
+    }
+
+    @Test
+    public void testUtf8Line() throws Exception {
+        // given
+        String line = "zażółć 😀 gęślą";
+        LineView view = view(line.getBytes(Charsets.UTF_8), 0);
+
+        // expect
+        assertThat(view.isAscii(), is(false));
+        assertThat(view.length(), is(line.length()));
+        assertThat(view.charAt(2), is('ż'));
+        assertThat(view.startsWith("zaż"), is(true));
+        assertThat(view.toString(), is(line));
+        assertThat(view.byteLength(), is(line.getBytes(Charsets.UTF_8).length));
+    }
+
+    @Test
+    public void testMalformedInputIsReplaced() throws Exception {
+        // given
+        byte[] bytes = {'a', (byte) 0xc5, 'b', (byte) 0xff, (byte) 0xed, (byte) 0xa0, (byte) 0x80, 'c'};
+        LineView view = view(bytes, 0);
+
+        // expect
+        assertThat(view.toString(), is(new String(bytes, Charsets.UTF_8)));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidIndex() throws Exception {
+        // given
+        LineView view = view("abc".getBytes(Charsets.UTF_8), 0);
+
+        // when
+        view.charAt(3);
+    }
+
+    private static LineView view(byte[] bytes, int start) {
+        int bits = 0;
+        for (int i = start; i < bytes.length; i++) {
+            bits |= bytes[i];
+        }
+        LineView view = new LineView();
+        view.set(ByteBuffer.wrap(bytes), start, bytes.length - start, start, bits >= 0);
+        return view;
+    }
+}
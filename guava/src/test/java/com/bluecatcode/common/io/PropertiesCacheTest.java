@@ -0,0 +1,124 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PropertiesCacheTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCachesTheSnapshot() throws Exception {
+        // given
+        File file = properties("a=1\nb=2\n");
+        PropertiesCache cache = new PropertiesCache(0, TimeUnit.SECONDS);
+
+        // when
+        ImmutableMap<String, String> first = cache.get(file);
+        ImmutableMap<String, String> second = cache.get(new File(file.getPath()));
+
+        // then
+        assertThat(first, is(ImmutableMap.of("a", "1", "b", "2")));
+        assertThat(second, sameInstance(first));
+        assertThat(cache.misses(), is(1L));
+        assertThat(cache.hits(), is(1L));
+    }
+
+    @Test
+    public void testRefreshSwapsChangedSnapshotsAndNotifiesListeners() throws Exception {
+        // given
+        File file = properties("a=1\n");
+        PropertiesCache cache = new PropertiesCache(0, TimeUnit.SECONDS);
+        List<String> changes = new ArrayList<>();
+        cache.addListener((changed, previous, current) -> changes.add(previous.get("a") + "->" + current.get("a")));
+        cache.get(file);
+
+        // when
+        com.google.common.io.Files.write("a=22\n", file, Charsets.UTF_8);
+        int unsettled = cache.refresh();
+        int changed = cache.refresh();
+
+        // then
+        assertThat(unsettled, is(0));
+        assertThat(changed, is(1));
+        assertThat(cache.get(file), is(ImmutableMap.of("a", "22")));
+        assertThat(changes.toString(), is("[1->22]"));
+        assertThat(cache.reloads(), is(1L));
+        assertThat(cache.refresh(), is(0));
+    }
+
+    @Test
+    public void testKeepsTheLastSnapshotIfTheFileIsDeleted() throws Exception {
+        // given
+        File file = properties("a=1\n");
+        PropertiesCache cache = new PropertiesCache(0, TimeUnit.SECONDS);
+        cache.get(file);
+
+        // when
+        assertThat(file.delete(), is(true));
+        cache.refresh();
+        int changed = cache.refresh();
+
+        // then
+        assertThat(changed, is(0));
+        assertThat(cache.get(file), is(ImmutableMap.of("a", "1")));
+        assertThat(cache.failures(), is(1L));
+    }
+
+    @Test
+    public void testPollsForChanges() throws Exception {
+        // given
+        File file = properties("a=1\n");
+        final CountDownLatch latch = new CountDownLatch(1);
+        try (PropertiesCache cache = new PropertiesCache(10, TimeUnit.MILLISECONDS)) {
+            // a partial snapshot of the in-place rewrite may be published first
+            cache.addListener((changed, previous, current) -> {
+                if (current.containsKey("b")) {
+                    latch.countDown();
+                }
+            });
+            cache.get(file);
+
+            // when
+            com.google.common.io.Files.write("a=1\nb=2\n", file, Charsets.UTF_8);
+
+            // then
+            assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(cache.get(file), is(ImmutableMap.of("a", "1", "b", "2")));
+        }
+    }
+
+    @Test
+    public void testFailsOnMissingFile() throws Exception {
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("File doesn't exist");
+
+        // when
+        new PropertiesCache(0, TimeUnit.SECONDS).get(new File(temporaryFolder.getRoot(), "missing.properties"));
+    }
+
+    private File properties(String content) throws Exception {
+        File file = temporaryFolder.newFile();
+        com.google.common.io.Files.write(content, file, Charsets.UTF_8);
+        return file;
+    }
+}
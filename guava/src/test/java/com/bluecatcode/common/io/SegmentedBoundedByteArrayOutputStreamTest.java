@@ -0,0 +1,205 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedBoundedByteArrayOutputStreamTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteBound() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(1);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the limit of the buffer"));
+
+        // when
+        stream.write(1);
+        stream.write(1);
+    }
+
+    @Test
+    public void testWriteArrayBound() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(32);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the buffer limit"));
+
+        // when
+        stream.write(new byte[60], 0, 60);
+    }
+
+    @Test
+    public void testInvalidLength() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(32);
+
+        // expect
+        exception.expect(IndexOutOfBoundsException.class);
+        exception.expectMessage(startsWith("Invalid length"));
+
+        // when
+        stream.write(new byte[30], 0, 31);
+    }
+
+    @Test
+    public void testWritingAcrossSegments() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(4, 1000);
+        byte[] expected = randomBytes(1000);
+
+        // when
+        stream.write(expected[0]);
+        stream.write(expected, 1, 500);
+        for (int i = 501; i < 1000; i++) {
+            stream.write(expected[i]);
+        }
+
+        // then
+        assertThat(stream.size(), is(1000));
+        assertTrue(Arrays.equals(stream.toByteArray(), expected));
+        assertThat(stream.asReadOnlyByteBuffers().length, greaterThan(1));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stream.writeTo(out);
+        assertTrue(Arrays.equals(out.toByteArray(), expected));
+    }
+
+    @Test
+    public void testReadOnlyByteBuffers() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(8, 100);
+        byte[] expected = randomBytes(100);
+        stream.write(expected);
+
+        // when
+        ByteBuffer[] buffers = stream.asReadOnlyByteBuffers();
+
+        // then
+        ByteBuffer joined = ByteBuffer.allocate(100);
+        for (ByteBuffer buffer : buffers) {
+            assertThat(buffer.isReadOnly(), is(true));
+            joined.put(buffer);
+        }
+        assertTrue(Arrays.equals(joined.array(), expected));
+    }
+
+    @Test
+    public void testSegmentsDontExceedTheLimit() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(4, 13);
+
+        // when
+        stream.write(randomBytes(13));
+
+        // then
+        int capacity = 0;
+        for (ByteBuffer buffer : stream.asReadOnlyByteBuffers()) {
+            capacity += buffer.capacity();
+        }
+        assertThat(capacity, is(13));
+    }
+
+    @Test
+    public void testWriteToGatheringChannel() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(16, 100000);
+        byte[] expected = randomBytes(100000);
+        stream.write(expected);
+        File file = temporaryFolder.newFile();
+
+        // when
+        long written;
+        try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+            written = stream.writeTo(channel);
+        }
+
+        // then
+        assertThat(written, is(100000L));
+        assertTrue(Arrays.equals(com.google.common.io.Files.toByteArray(file), expected));
+    }
+
+    @Test
+    public void testWriteToChannel() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(16, 1000);
+        byte[] expected = randomBytes(1000);
+        stream.write(expected);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        long written = stream.writeTo(Channels.newChannel(out));
+
+        // then
+        assertThat(written, is(1000L));
+        assertTrue(Arrays.equals(out.toByteArray(), expected));
+    }
+
+    @Test
+    public void testInputStream() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(4, 1000);
+        byte[] expected = randomBytes(1000);
+        stream.write(expected);
+
+        // when
+        InputStream in = stream.asInputStream();
+
+        // then
+        assertThat(in.available(), is(1000));
+        assertThat(in.read(), is(expected[0] & 0xff));
+        assertThat(in.skip(9), is(9L));
+        byte[] rest = ByteStreams.toByteArray(in);
+        assertTrue(Arrays.equals(rest, Arrays.copyOfRange(expected, 10, 1000)));
+        assertThat(in.read(), is(-1));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        // given
+        SegmentedBoundedByteArrayOutputStream stream = new SegmentedBoundedByteArrayOutputStream(4, 100);
+        stream.write(randomBytes(100));
+
+        // when
+        stream.reset();
+        stream.write("Hello World".getBytes(Charsets.UTF_8));
+
+        // then
+        assertThat(stream.size(), is(11));
+        assertThat(stream.toString(Charsets.UTF_8), is("Hello World"));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,154 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SpillingBoundedOutputStreamTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testStaysInMemoryBelowThreshold() throws Exception {
+        // given
+        byte[] expected = randomBytes(100);
+
+        // when
+        try (SpillingBoundedOutputStream stream = new SpillingBoundedOutputStream(100, 1000, temporaryFolder.getRoot())) {
+            stream.write(expected);
+
+            // then
+            assertThat(stream.isSpilled(), is(false));
+            assertThat(stream.file(), is(nullValue()));
+            try (InputStream in = stream.asInputStream()) {
+                assertTrue(Arrays.equals(ByteStreams.toByteArray(in), expected));
+            }
+        }
+    }
+
+    @Test
+    public void testSpillsAboveThreshold() throws Exception {
+        // given
+        byte[] expected = randomBytes(50000);
+        File file;
+
+        // when
+        try (SpillingBoundedOutputStream stream = new SpillingBoundedOutputStream(100, 100000, temporaryFolder.getRoot())) {
+            stream.write(expected, 0, 60);
+            for (int i = 60; i < 150; i++) {
+                stream.write(expected[i]);
+            }
+            stream.write(expected, 150, 20000);
+            stream.write(expected, 20150, expected.length - 20150);
+
+            // then
+            assertThat(stream.isSpilled(), is(true));
+            assertThat(stream.size(), is(50000L));
+            file = stream.file();
+            assertThat(file, is(notNullValue()));
+            try (InputStream in = stream.asInputStream()) {
+                assertTrue(Arrays.equals(ByteStreams.toByteArray(in), expected));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            stream.writeTo(out);
+            assertTrue(Arrays.equals(out.toByteArray(), expected));
+        }
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void testTransferTo() throws Exception {
+        // given
+        byte[] expected = randomBytes(10000);
+        File target = temporaryFolder.newFile();
+
+        // when
+        try (SpillingBoundedOutputStream stream = new SpillingBoundedOutputStream(1000, 10000, temporaryFolder.getRoot());
+             FileChannel channel = new FileOutputStream(target).getChannel()) {
+            stream.write(expected);
+            assertThat(stream.transferTo(channel), is(10000L));
+        }
+
+        // then
+        assertTrue(Arrays.equals(com.google.common.io.Files.toByteArray(target), expected));
+    }
+
+    @Test
+    public void testTransferToFromMemory() throws Exception {
+        // given
+        byte[] expected = randomBytes(10);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        try (SpillingBoundedOutputStream stream = new SpillingBoundedOutputStream(1000, 10000, temporaryFolder.getRoot())) {
+            stream.write(expected);
+            stream.transferTo(Channels.newChannel(out));
+        }
+
+        // then
+        assertTrue(Arrays.equals(out.toByteArray(), expected));
+    }
+
+    @Test
+    public void testHardLimitAfterSpill() throws Exception {
+        // given
+        SpillingBoundedOutputStream stream = new SpillingBoundedOutputStream(10, 100, temporaryFolder.getRoot());
+        stream.write(new byte[100]);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the limit of the buffer"));
+
+        // when
+        try {
+            stream.write(1);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testHardLimitForArrays() throws Exception {
+        // given
+        SpillingBoundedOutputStream stream = new SpillingBoundedOutputStream(10, 100, temporaryFolder.getRoot());
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the buffer limit"));
+
+        // when
+        try {
+            stream.write(new byte[101]);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,104 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TailByteArrayOutputStreamTest {
+
+    @Test
+    public void testKeepsEverythingBelowLimit() throws Exception {
+        // given
+        TailByteArrayOutputStream stream = new TailByteArrayOutputStream(16);
+
+        // when
+        stream.write("Hello".getBytes(Charsets.UTF_8));
+
+        // then
+        assertThat(stream.size(), is(5));
+        assertThat(stream.discarded(), is(0L));
+        assertThat(stream.toString(Charsets.UTF_8), is("Hello"));
+    }
+
+    @Test
+    public void testKeepsTheTail() throws Exception {
+        // given
+        TailByteArrayOutputStream stream = new TailByteArrayOutputStream(8);
+
+        // when
+        stream.write("Hello ".getBytes(Charsets.UTF_8));
+        stream.write("World".getBytes(Charsets.UTF_8));
+        stream.write('!');
+
+        // then
+        assertThat(stream.size(), is(8));
+        assertThat(stream.written(), is(12L));
+        assertThat(stream.discarded(), is(4L));
+        assertThat(stream.toString(Charsets.UTF_8), is("o World!"));
+    }
+
+    @Test
+    public void testWriteLargerThanLimit() throws Exception {
+        // given
+        TailByteArrayOutputStream stream = new TailByteArrayOutputStream(4);
+        stream.write('x');
+
+        // when
+        stream.write("abcdefgh".getBytes(Charsets.UTF_8), 1, 6);
+
+        // then
+        assertThat(stream.toString(Charsets.UTF_8), is("defg"));
+    }
+
+    @Test
+    public void testMatchesLastBytesOfEverything() throws Exception {
+        // given
+        Random random = new Random(42);
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+
+        for (int limit = 1; limit < 40; limit++) {
+            TailByteArrayOutputStream stream = new TailByteArrayOutputStream(limit);
+            all.reset();
+
+            // when
+            for (int i = 0; i < 20; i++) {
+                byte[] bytes = new byte[random.nextInt(2 * limit + 1)];
+                random.nextBytes(bytes);
+                stream.write(bytes);
+                all.write(bytes);
+                stream.write(i);
+                all.write(i);
+
+                // then
+                byte[] everything = all.toByteArray();
+                byte[] expected = Arrays.copyOfRange(everything, Math.max(0, everything.length - limit), everything.length);
+                assertTrue(Arrays.equals(stream.toByteArray(), expected));
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                stream.writeTo(out);
+                assertTrue(Arrays.equals(out.toByteArray(), expected));
+            }
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        // given
+        TailByteArrayOutputStream stream = new TailByteArrayOutputStream(4);
+        stream.write("abcdef".getBytes(Charsets.UTF_8));
+
+        // when
+        stream.reset();
+        stream.write("xy".getBytes(Charsets.UTF_8));
+
+        // then
+        assertThat(stream.written(), is(2L));
+        assertThat(stream.toString(Charsets.UTF_8), is("xy"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.bluecatcode.common.io;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class UnsynchronizedBoundedByteArrayOutputStreamTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void testWriteBound() throws Exception {
+        // given
+        UnsynchronizedBoundedByteArrayOutputStream stream = new UnsynchronizedBoundedByteArrayOutputStream(1);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the limit of the buffer"));
+
+        // when
+        stream.write(1);
+        stream.write(1);
+    }
+
+    @Test
+    public void testWriteArrayBound() throws Exception {
+        // given
+        UnsynchronizedBoundedByteArrayOutputStream stream = new UnsynchronizedBoundedByteArrayOutputStream(32);
+
+        // expect
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(startsWith("Reached the buffer limit"));
+
+        // when
+        stream.write(new byte[60], 0, 60);
+    }
+
+    @Test
+    public void testInvalidOffset() throws Exception {
+        // given
+        UnsynchronizedBoundedByteArrayOutputStream stream = new UnsynchronizedBoundedByteArrayOutputStream(32);
+
+        // expect
+        exception.expect(IndexOutOfBoundsException.class);
+        exception.expectMessage(startsWith("Invalid offset"));
+
+        // when
+        stream.write(new byte[30], 31, 1);
+    }
+
+    @Test
+    public void testWriting() throws Exception {
+        // given
+        UnsynchronizedBoundedByteArrayOutputStream stream = new UnsynchronizedBoundedByteArrayOutputStream(4, 64);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        byte[] bytes = new byte[30];
+        new Random().nextBytes(bytes);
+
+        // when
+        stream.write(7);
+        expected.write(7);
+        stream.write(bytes);
+        expected.write(bytes);
+        stream.write(bytes, 3, 20);
+        expected.write(bytes, 3, 20);
+
+        // then
+        assertThat(stream.size(), is(expected.size()));
+        assertTrue(Arrays.equals(stream.toByteArray(), expected.toByteArray()));
+        assertTrue(Arrays.equals(Arrays.copyOf(stream.buffer(), stream.size()), expected.toByteArray()));
+    }
+
+    @Test
+    public void testNeverGrowsBeyondLimit() throws Exception {
+        // given
+        UnsynchronizedBoundedByteArrayOutputStream stream = new UnsynchronizedBoundedByteArrayOutputStream(16, 40);
+
+        // when
+        for (int i = 0; i < 40; i++) {
+            stream.write(i);
+        }
+
+        // then
+        assertThat(stream.buffer().length, is(40));
+        assertThat(stream.size(), is(stream.limit()));
+    }
+
+    @Test
+    public void testResetKeepsBuffer() throws Exception {
+        // given
+        UnsynchronizedBoundedByteArrayOutputStream stream = new UnsynchronizedBoundedByteArrayOutputStream(8);
+        stream.write("Hello".getBytes(Charsets.UTF_8));
+        byte[] buffer = stream.buffer();
+
+        // when
+        stream.reset();
+        stream.write("World".getBytes(Charsets.UTF_8));
+
+        // then
+        assertThat(stream.buffer() == buffer, is(true));
+        assertThat(stream.toString(Charsets.UTF_8), is("World"));
+    }
+}